@@ -0,0 +1,46 @@
+package benchmarks;
+
+import org.openqa.selenium.WebDriver;
+
+import sentinel.exceptions.SentinelException;
+import sentinel.pages.PageManager;
+import sentinel.utils.ConfigurationManager;
+import sentinel.utils.WebDriverFactory;
+
+/**
+ * Points Sentinel at the benchmark configuration in conf/sentinel.yml, which
+ * selects the in-process stub browser. Benchmarks must be run from the
+ * benchmarks directory so that the configuration file can be found.
+ */
+public final class BenchmarkEnvironment {
+
+	private BenchmarkEnvironment() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * Selects the bench environment and reloads the configuration so that any
+	 * system properties the benchmark has set are seen.
+	 */
+	public static void configure() {
+		System.setProperty("env", "bench");
+		ConfigurationManager.reloadConfiguration();
+	}
+
+	/**
+	 * Loads a generated page into the current thread's stub browser and makes
+	 * BenchmarkPage the current page.
+	 *
+	 * @param rows int the number of rows in the results table
+	 * @return WebDriver the current thread's driver
+	 * @throws SentinelException if the driver or page cannot be created
+	 * @throws java.io.IOException if the page cannot be written
+	 */
+	public static WebDriver openBenchmarkPage(int rows) throws SentinelException, java.io.IOException {
+		configure();
+		WebDriver driver = WebDriverFactory.getWebDriver();
+		driver.get(BenchmarkHtml.write(rows));
+		PageManager.setPage("BenchmarkPage");
+		return driver;
+	}
+}
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Generates the static page the browser-dependent benchmarks run against: a
+ * login form matching benchmarks.pages.BenchmarkPage and a results table with
+ * a header row and the requested number of body rows.
+ */
+public final class BenchmarkHtml {
+
+	private BenchmarkHtml() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * Returns the page markup.
+	 *
+	 * @param rows int the number of rows in the results table
+	 * @return String the HTML page
+	 */
+	public static String page(int rows) {
+		StringBuilder html = new StringBuilder(64 * rows + 512);
+		html.append("<html><head><title>Benchmark</title></head><body>")
+			.append("<form><input id='username' type='text'><input name='password' type='password'>")
+			.append("<button type='submit'>Log In</button></form><a href='#help'>Help</a>")
+			.append("<table id='results'><thead><tr><th>Id</th><th>Name</th><th>Status</th><th>Amount</th></tr></thead><tbody>");
+		for (int i = 0; i < rows; i++) {
+			html.append("<tr><td>").append(i)
+				.append("</td><td>Customer ").append(i)
+				.append("</td><td>").append(i % 3 == 0 ? "Active" : "Pending")
+				.append("</td><td>").append(i * 7 % 1000).append(".00</td></tr>");
+		}
+		return html.append("</tbody></table></body></html>").toString();
+	}
+
+	/**
+	 * Writes the page to a temporary file that is deleted when the JVM exits.
+	 *
+	 * @param rows int the number of rows in the results table
+	 * @return String the file URL to load in the browser
+	 * @throws IOException if the file cannot be written
+	 */
+	public static String write(int rows) throws IOException {
+		File file = File.createTempFile("sentinel-benchmark-", ".html");
+		file.deleteOnExit();
+		Files.write(file.toPath(), page(rows).getBytes(StandardCharsets.UTF_8));
+		return file.toURI().toString();
+	}
+}
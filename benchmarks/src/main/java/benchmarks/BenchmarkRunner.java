@@ -0,0 +1,43 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the standard JMH command line options, writing the
+ * results as JSON to target/jmh-result.json unless -rf or -rff say otherwise,
+ * so that results can be compared between releases.
+ * <p>
+ * <b>Example:</b>
+ * <p>
+ * <code>java -jar target/benchmarks.jar TableBenchmark -rff target/table-1.0.0.json</code>
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		if (commandLine.shouldHelp()) {
+			commandLine.showHelp();
+			return;
+		}
+		if (commandLine.shouldList()) {
+			new Runner(commandLine).list();
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			options.result("target/jmh-result.json");
+		}
+		// ConfigurationData extends java.io.File, which Jackson can only populate on Java 9 and later if java.io is opened to it.
+		if (!System.getProperty("java.specification.version").startsWith("1.") && !commandLine.getJvmArgsAppend().hasValue()) {
+			options.jvmArgsAppend("--add-opens", "java.base/java.io=ALL-UNNAMED");
+		}
+		new Runner(options.build()).run();
+	}
+}
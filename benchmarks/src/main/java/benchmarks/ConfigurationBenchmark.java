@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sentinel.exceptions.SentinelException;
+import sentinel.utils.ConfigurationManager;
+
+/**
+ * Configuration lookups, which happen on every wait and every driver
+ * creation. A property set on the command line short-circuits the YAML file,
+ * so both paths are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationBenchmark {
+
+	@Setup
+	public void setUp() throws SentinelException {
+		System.setProperty("benchmarkSystemProperty", "set");
+		BenchmarkEnvironment.configure();
+		// Load the YAML file once so that the benchmarks measure lookups, not the first parse.
+		ConfigurationManager.getOrCreateConfigurationData("timeout");
+	}
+
+	@Benchmark
+	public String getOrCreateConfigurationDataFromYaml() throws SentinelException {
+		return ConfigurationManager.getOrCreateConfigurationData("pageObjectPackages");
+	}
+
+	@Benchmark
+	public String getOrCreateConfigurationDataFromSystemProperty() throws SentinelException {
+		return ConfigurationManager.getOrCreateConfigurationData("benchmarkSystemProperty");
+	}
+
+	@Benchmark
+	public String getOrCreateConfigurationDataMissing() throws SentinelException {
+		return ConfigurationManager.getOrCreateConfigurationData("notAProperty");
+	}
+
+	@Benchmark
+	public TimeUnit getDefaultTimeUnit() throws SentinelException {
+		return ConfigurationManager.getDefaultTimeUnit();
+	}
+
+	@Benchmark
+	public long getDefaultTimeout() throws SentinelException {
+		return ConfigurationManager.getDefaultTimeout();
+	}
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sentinel.elements.PageElement;
+import sentinel.exceptions.SentinelException;
+import sentinel.pages.Page;
+import sentinel.pages.PageFactory;
+import sentinel.pages.PageManager;
+import sentinel.utils.ElementFunctions;
+
+/**
+ * Looking up pages and elements by name, which every step definition does.
+ * The lookups themselves do not touch the browser; elementToWebElement adds
+ * one findElement against the stub browser for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementFunctionsBenchmark {
+
+	@Setup
+	public void setUp() throws Exception {
+		BenchmarkEnvironment.openBenchmarkPage(10);
+	}
+
+	@TearDown
+	public void tearDown() {
+		PageManager.quit();
+	}
+
+	@Benchmark
+	public Page buildOrRetrievePage() throws SentinelException {
+		return PageFactory.buildOrRetrievePage("BenchmarkPage");
+	}
+
+	@Benchmark
+	public PageElement getElement() throws SentinelException {
+		return ElementFunctions.getElement("username field");
+	}
+
+	@Benchmark
+	public List<PageElement> getElements() throws SentinelException {
+		return ElementFunctions.getElements("username field", "password field", "login button");
+	}
+
+	@Benchmark
+	public boolean elementToWebElement() throws SentinelException {
+		return ElementFunctions.getElement("login button").isEnabled();
+	}
+}
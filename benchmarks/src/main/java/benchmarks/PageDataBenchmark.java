@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sentinel.exceptions.SentinelException;
+import sentinel.pages.PageData;
+import sentinel.pages.PageDataCache;
+import sentinel.utils.ConfigurationManager;
+
+/**
+ * Reading page YAML files. loadYaml parses the file every time;
+ * PageDataCache.getPageData goes through the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageDataBenchmark {
+	private File pageFile;
+
+	@Setup
+	public void setUp() throws SentinelException {
+		BenchmarkEnvironment.configure();
+		pageFile = ConfigurationManager.getPageObjectConfigPath("BenchmarkPage");
+	}
+
+	@Benchmark
+	public PageData loadYaml() throws SentinelException, java.io.IOException {
+		return PageData.loadYaml(pageFile);
+	}
+
+	@Benchmark
+	public PageData getCachedPageData() throws SentinelException, java.io.IOException {
+		return PageDataCache.getPageData("BenchmarkPage");
+	}
+
+	@Benchmark
+	public String getUrl() throws SentinelException {
+		return ConfigurationManager.getUrl("BenchmarkPage");
+	}
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sentinel.utils.StringUtils;
+
+/**
+ * Converting API response bodies to strings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark {
+	@Param({ "1024", "65536", "1048576" })
+	public int size;
+
+	private byte[] body;
+
+	@Setup
+	public void setUp() {
+		char[] text = new char[size];
+		Arrays.fill(text, 'x');
+		body = new String(text).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public String inputStreamToString() throws IOException {
+		return StringUtils.inputStreamToString(new ByteArrayInputStream(body));
+	}
+}
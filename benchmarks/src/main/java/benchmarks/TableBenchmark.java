@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sentinel.elements.Table;
+import sentinel.exceptions.SentinelException;
+import sentinel.pages.PageManager;
+import sentinel.utils.SelectorType;
+
+/**
+ * Reading a table from the stub browser and running the verification steps
+ * on it. The read benchmarks clear the table first so that every invocation
+ * reads it again; the cached benchmarks measure the checks alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+	@Param({ "50", "500" })
+	public int rows;
+
+	@Param({ "script", "element" })
+	public String tableExtraction;
+
+	private BenchmarkTable table;
+
+	/**
+	 * Exposes Table.reset so the benchmarks can make the table read itself again.
+	 */
+	static class BenchmarkTable extends Table {
+		BenchmarkTable() {
+			super(SelectorType.ID, "results");
+		}
+
+		void forget() {
+			reset();
+		}
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		System.setProperty("tableExtraction", tableExtraction);
+		BenchmarkEnvironment.openBenchmarkPage(rows);
+		table = new BenchmarkTable();
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.clearProperty("tableExtraction");
+		PageManager.quit();
+	}
+
+	@Benchmark
+	public List<String> readHeaders() throws SentinelException {
+		table.forget();
+		return table.getOrCreateHeaders();
+	}
+
+	@Benchmark
+	public List<ArrayList<String>> readRows() throws SentinelException {
+		table.forget();
+		return table.getOrCreateRows();
+	}
+
+	@Benchmark
+	public boolean readAndVerifyColumnUnique() throws SentinelException {
+		table.forget();
+		return table.verifyColumnCellsAreUnique("Id");
+	}
+
+	@Benchmark
+	public boolean verifyColumnUniqueCached() throws SentinelException {
+		return table.verifyColumnCellsAreUnique("Id");
+	}
+
+	@Benchmark
+	public boolean verifyRowsUniqueCached() throws SentinelException {
+		return table.verifyRowCellsAreUnique(new String[] { "Name", "Status" });
+	}
+
+	@Benchmark
+	public boolean verifyColumnContainsCached() throws SentinelException {
+		return table.verifyColumnCellsContain("Name", "Customer");
+	}
+}
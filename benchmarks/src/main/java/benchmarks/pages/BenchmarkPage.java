@@ -0,0 +1,15 @@
+package benchmarks.pages;
+
+import sentinel.elements.Button;
+import sentinel.elements.Link;
+import sentinel.elements.Table;
+import sentinel.elements.Textbox;
+import sentinel.pages.Page;
+
+public class BenchmarkPage extends Page {
+	public Textbox username_field() { return new Textbox(ID, "username"); }
+	public Textbox password_field() { return new Textbox(NAME, "password"); }
+	public Button login_button() { return new Button(CSS, "form button[type='submit']"); }
+	public Link help_link() { return new Link(TEXT, "Help"); }
+	public Table results_table() { return new Table(ID, "results"); }
+}
@@ -0,0 +1,5 @@
+/**
+ * Page objects for the benchmarks. The markup they describe is generated by
+ * benchmarks.BenchmarkHtml and served by the stub browser.
+ */
+package benchmarks.pages;
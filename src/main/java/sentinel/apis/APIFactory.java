@@ -9,7 +9,9 @@ import sentinel.exceptions.FileNotFoundException;
 import sentinel.exceptions.IOException;
 import sentinel.exceptions.MissingConfigurationException;
 import sentinel.exceptions.PageNotFoundException;
+import sentinel.processor.ObjectRegistries;
 import sentinel.utils.ConfigurationManager;
+import sentinel.utils.MethodRegistry;
 
 /**
  * An implementation of the factory design pattern based on the PageFactory. This factory object 
@@ -78,16 +80,27 @@ public class APIFactory {
 		API api = null;
 		String[] pageObjectPackagesList = ConfigurationManager.getPageObjectPackageList();
 
+		// Check the registry generated at compile time first, as it does not throw exceptions on a miss.
 		for (String apiObjectPackage : pageObjectPackagesList) {
-			log.trace("apiObjectPackage: " + apiObjectPackage);
-			api = findAPIInPackage(apiName, apiObjectPackage);
+			api = ObjectRegistries.newAPI(apiObjectPackage + "." + apiName);
 			if (api != null) {
-				break; // If we have a page object, stop searching.
+				break;
+			}
+		}
+		if (api == null) {
+			for (String apiObjectPackage : pageObjectPackagesList) {
+				log.trace("apiObjectPackage: " + apiObjectPackage);
+				api = findAPIInPackage(apiName, apiObjectPackage);
+				if (api != null) {
+					break; // If we have a page object, stop searching.
+				}
 			}
 		}
 		if(api == null) {
 			throw new PageNotFoundException("The API you want to test could not be built. At least one Page object package is required to run a test. Please add a pageObjectPackage property to your conf/sentinel.yml configuration file and try again.");
 		}
+		// Build the action lookup table once, when the API is first created.
+		MethodRegistry.getRegistry(api.getClass(), Action.class);
 		return api;
 	}
 	
@@ -1,7 +1,6 @@
 package sentinel.apis;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Callable;
 
 import sentinel.exceptions.ConfigurationMappingException;
 import sentinel.exceptions.ConfigurationParseException;
@@ -9,9 +8,19 @@ import sentinel.exceptions.FileNotFoundException;
 import sentinel.exceptions.IOException;
 import sentinel.exceptions.MissingConfigurationException;
 import sentinel.exceptions.PageNotFoundException;
+import sentinel.utils.RunSummary;
 
 public class APIManager {
-	private static Map<String, API> apis = new HashMap<String, API>();
+	private static final ScenarioScopedMap<API> apis = new ScenarioScopedMap<API>("APIs");
+
+	static {
+		RunSummary.addReport(new Callable<String>() {
+			@Override
+			public String call() {
+				return getMemoryReport();
+			}
+		});
+	}
 	
 	private APIManager() {
 		// Exists only to defeat instantiation.
@@ -38,4 +47,31 @@ public class APIManager {
 	public static API getAPI(String uid) {
 		return apis.get(uid);
 	}
+
+	/**
+	 * Releases the API, request and response stored for a scenario. Called by
+	 * APISteps when each scenario ends.
+	 * 
+	 * @see sentinel.apis.RequestManager#release(String)
+	 * @see sentinel.apis.ResponseManager#release(String)
+	 * @param uid String the unique identifier of the scenario
+	 */
+	public static void releaseScenario(String uid) {
+		apis.release(uid);
+		RequestManager.release(uid);
+		ResponseManager.release(uid);
+	}
+
+	/**
+	 * Returns how many APIs, requests and responses have been stored and
+	 * released, and an estimate of the memory still held, one line each.
+	 * 
+	 * @return String the summary, or an empty string if no API has been used
+	 */
+	public static String getMemoryReport() {
+		if (apis.isUnused() && RequestManager.requests.isUnused() && ResponseManager.responses.isUnused()) {
+			return "";
+		}
+		return "API scenario data:\n  " + apis.getReport() + "\n  " + RequestManager.requests.getReport() + "\n  " + ResponseManager.responses.getReport();
+	}
 }
\ No newline at end of file
@@ -42,4 +42,13 @@ public class Request {
 		return jsonRequest;
 	}
 
+	/**
+	 * Returns a rough estimate of the memory held by this request: two bytes
+	 * per character of the request body.
+	 * @return long the estimated size in bytes
+	 */
+	long estimateSize() {
+		return jsonRequest == null ? 0 : 2L * jsonRequest.length();
+	}
+
 }
@@ -1,10 +1,12 @@
 package sentinel.apis;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class RequestManager {
-	private static Map<String, Request> requests = new HashMap<String, Request>();
+	static final ScenarioScopedMap<Request> requests = new ScenarioScopedMap<Request>("Requests") {
+		@Override
+		protected long sizeOf(Request request) {
+			return request.estimateSize();
+		}
+	};
 	
 	private RequestManager() {
 		// Exists only to defeat instantiation.
@@ -46,4 +48,22 @@ public class RequestManager {
 		requests.put(uid, request);
 	}
 
+	/**
+	 * Removes the Request object stored for the uid.
+	 * @param uid String the unique identifier of the scenario
+	 */
+	public static void release(String uid) {
+		requests.release(uid);
+	}
+
+	/**
+	 * Returns a Request object that was released but kept because the
+	 * apiRetention property is set.
+	 * @param uid String the unique identifier of the scenario
+	 * @return Request the released Request object, or null if it was not kept
+	 */
+	public static Request getRetainedRequest(String uid) {
+		return requests.getRetained(uid);
+	}
+
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package sentinel.apis;
 
 import java.io.IOException;
 
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.ParseException;
 
@@ -28,5 +29,20 @@ public class Response {
 	public Integer getResponseCode() {
 		return response.getStatusLine().getStatusCode();
 	}
+
+	/**
+	 * Returns a rough estimate of the memory held by this response: two bytes
+	 * per character of the body and of each header.
+	 * @return long the estimated size in bytes
+	 */
+	long estimateSize() {
+		long size = jsonResponse == null ? 0 : 2L * jsonResponse.length();
+		if (response != null) {
+			for (Header header : response.getAllHeaders()) {
+				size += 2L * (header.getName().length() + StringUtils.length(header.getValue()));
+			}
+		}
+		return size;
+	}
 	
 }
@@ -1,10 +1,12 @@
 package sentinel.apis;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class ResponseManager {
-	private static Map<String, Response> responses = new HashMap<String, Response>();
+	static final ScenarioScopedMap<Response> responses = new ScenarioScopedMap<Response>("Responses") {
+		@Override
+		protected long sizeOf(Response response) {
+			return response.estimateSize();
+		}
+	};
 	
 	private ResponseManager() {
 		// Exists only to defeat instantiation.
@@ -26,4 +28,22 @@ public class ResponseManager {
 		return responses.get(uid);
 	}
 
+	/**
+	 * Removes the Response object stored for the uid.
+	 * @param uid String the unique identifier of the scenario
+	 */
+	public static void release(String uid) {
+		responses.release(uid);
+	}
+
+	/**
+	 * Returns a Response object that was released but kept because the
+	 * apiRetention property is set.
+	 * @param uid String the unique identifier of the scenario
+	 * @return Response the released Response object, or null if it was not kept
+	 */
+	public static Response getRetainedResponse(String uid) {
+		return responses.getRetained(uid);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package sentinel.apis;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sentinel.utils.ConfigurationManager;
+import sentinel.utils.StringUtils;
+
+/**
+ * Holds the objects an API manager stores for each scenario, keyed by the
+ * Cucumber scenario id, until the scenario ends and APISteps releases them.
+ * <p>
+ * Released objects are normally dropped. For debugging, the apiRetention
+ * property can keep them: weak keeps them until the garbage collector needs
+ * the memory, and a number keeps that many of the most recently released
+ * objects. Counts and an estimate of the memory held are reported by
+ * getReport.
+ *
+ * @param <V> the type of object stored
+ */
+class ScenarioScopedMap<V> {
+	private final String name;
+	private final ConcurrentHashMap<String, V> live = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Long> sizes = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, WeakReference<V>> weaklyRetained = new ConcurrentHashMap<>();
+	// Guarded by itself.
+	private final LinkedHashMap<String, V> recentlyReleased = new LinkedHashMap<>();
+
+	private final AtomicLong stored = new AtomicLong();
+	private final AtomicLong released = new AtomicLong();
+	private final AtomicLong liveBytes = new AtomicLong();
+	private final AtomicLong peakBytes = new AtomicLong();
+	private final AtomicLong peakEntries = new AtomicLong();
+
+	/**
+	 * Creates an empty map.
+	 *
+	 * @param name String the name of the objects stored, used in the report
+	 */
+	ScenarioScopedMap(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns an estimate of the memory held by a stored object, in bytes.
+	 * Returns 0 unless overridden.
+	 *
+	 * @param value V the stored object
+	 * @return long the estimated size in bytes
+	 */
+	protected long sizeOf(V value) {
+		return 0;
+	}
+
+	V get(String uid) {
+		return live.get(uid);
+	}
+
+	V put(String uid, V value) {
+		live.put(uid, value);
+		long size = sizeOf(value);
+		Long previous = sizes.put(uid, size);
+		stored.incrementAndGet();
+		updatePeak(peakBytes, liveBytes.addAndGet(size - (previous == null ? 0 : previous)));
+		updatePeak(peakEntries, live.size());
+		return value;
+	}
+
+	/**
+	 * Removes the object stored for a scenario, retaining it if the
+	 * apiRetention property asks for it.
+	 *
+	 * @param uid String the scenario id
+	 */
+	void release(String uid) {
+		V value = live.remove(uid);
+		Long size = sizes.remove(uid);
+		if (size != null) {
+			liveBytes.addAndGet(-size);
+		}
+		if (value == null) {
+			return;
+		}
+		released.incrementAndGet();
+		String retention = getRetention();
+		if (retention == null || retention.equalsIgnoreCase("none")) {
+			return;
+		}
+		if (retention.equalsIgnoreCase("weak")) {
+			weaklyRetained.put(uid, new WeakReference<V>(value));
+			// Drop the entries whose objects have already been collected.
+			Iterator<WeakReference<V>> references = weaklyRetained.values().iterator();
+			while (references.hasNext()) {
+				if (references.next().get() == null) {
+					references.remove();
+				}
+			}
+			return;
+		}
+		int limit;
+		try {
+			limit = Integer.parseInt(retention.trim());
+		} catch (NumberFormatException e) {
+			return;
+		}
+		synchronized (recentlyReleased) {
+			recentlyReleased.put(uid, value);
+			Iterator<String> oldest = recentlyReleased.keySet().iterator();
+			while (recentlyReleased.size() > limit && oldest.hasNext()) {
+				oldest.next();
+				oldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns an object that was released but retained for debugging.
+	 *
+	 * @param uid String the scenario id
+	 * @return V the retained object, or null if it was not retained or has been collected
+	 */
+	V getRetained(String uid) {
+		synchronized (recentlyReleased) {
+			V value = recentlyReleased.get(uid);
+			if (value != null) {
+				return value;
+			}
+		}
+		WeakReference<V> reference = weaklyRetained.get(uid);
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * Returns true if nothing has ever been stored.
+	 *
+	 * @return boolean true if the map has not been used
+	 */
+	boolean isUnused() {
+		return stored.get() == 0;
+	}
+
+	/**
+	 * Returns a one line summary of how many objects were stored, released
+	 * and are still held, and the estimated memory they use.
+	 *
+	 * @return String the summary
+	 */
+	String getReport() {
+		int retained;
+		synchronized (recentlyReleased) {
+			retained = recentlyReleased.size();
+		}
+		for (Map.Entry<String, WeakReference<V>> entry : weaklyRetained.entrySet()) {
+			if (entry.getValue().get() != null) {
+				retained++;
+			}
+		}
+		return StringUtils.format("{}: stored {}, released {}, live {} (peak {}), retained {}, live memory {} KB (peak {} KB)", name,
+				stored.get(), released.get(), live.size(), peakEntries.get(), retained, liveBytes.get() / 1024, peakBytes.get() / 1024);
+	}
+
+	private static String getRetention() {
+		try {
+			return ConfigurationManager.getProperty("apiRetention");
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static void updatePeak(AtomicLong peak, long value) {
+		long current;
+		do {
+			current = peak.get();
+		} while (value > current && !peak.compareAndSet(current, value));
+	}
+}
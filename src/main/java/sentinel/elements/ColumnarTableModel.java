@@ -0,0 +1,239 @@
+package sentinel.elements;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read only, column oriented copy of the text in a Table. Every distinct cell
+ * value is stored once in a dictionary and each column holds the dictionary
+ * codes of its cells, so checks on a column work with ints instead of Strings
+ * and only ever look at each distinct value once.
+ * <p>
+ * Header lookups, uniqueness checks (for a single column or a composite key made
+ * of several columns) and containment checks all run in time linear to the
+ * number of rows.
+ */
+public class ColumnarTableModel {
+	private static final int MISSING = -1; // Code for a row that has fewer cells than there are headers
+
+	private final List<String> headers;
+	private final Map<String, Integer> headerIndex = new HashMap<>();
+	private final List<String> dictionary = new ArrayList<>();
+	private final int[][] columns;
+	private final int rowCount;
+
+	/**
+	 * Builds the model from the header text and the cell text of each row.
+	 * 
+	 * @param headers List&lt;String&gt; the column headers
+	 * @param rows List&lt;? extends List&lt;String&gt;&gt; the cell text of every row
+	 */
+	public ColumnarTableModel(List<String> headers, List<? extends List<String>> rows) {
+		this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+		this.rowCount = rows.size();
+		this.columns = new int[headers.size()][rowCount];
+
+		// Later headers win when two have the same text, the same as the Table columns map.
+		for (int i = 0; i < headers.size(); i++) {
+			headerIndex.put(headers.get(i), i);
+		}
+
+		Map<String, Integer> codes = new HashMap<>();
+		for (int row = 0; row < rowCount; row++) {
+			List<String> cells = rows.get(row);
+			for (int column = 0; column < columns.length; column++) {
+				String cell = column < cells.size() ? cells.get(column) : null;
+				if (cell == null) {
+					columns[column][row] = MISSING;
+					continue;
+				}
+				Integer code = codes.get(cell);
+				if (code == null) {
+					code = dictionary.size();
+					dictionary.add(cell);
+					codes.put(cell, code);
+				}
+				columns[column][row] = code;
+			}
+		}
+	}
+
+	/**
+	 * Returns the column headers.
+	 * 
+	 * @return List&lt;String&gt; the column headers
+	 */
+	public List<String> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Returns the number of rows in the model.
+	 * 
+	 * @return int the number of rows
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the number of distinct cell values in the whole table.
+	 * 
+	 * @return int the number of distinct cell values
+	 */
+	public int getDistinctValueCount() {
+		return dictionary.size();
+	}
+
+	/**
+	 * Returns the index of the column with exactly the given header.
+	 * 
+	 * @param header String the column header
+	 * @return int the index of the column, or -1 if there is no such column
+	 */
+	public int getColumnIndex(String header) {
+		Integer index = headerIndex.get(header);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns true if there is a column with exactly the given header, or with a
+	 * header containing the given text.
+	 * 
+	 * @param columnName String the text to look for in the headers
+	 * @return boolean true if a matching column exists, otherwise false
+	 */
+	public boolean columnExists(String columnName) {
+		if (headerIndex.containsKey(columnName)) {
+			return true;
+		}
+		for (String header : headers) {
+			if (header.contains(columnName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the text of a cell.
+	 * 
+	 * @param column int the index of the column
+	 * @param row int the index of the row
+	 * @return String the text in the cell, or null if the row does not have that many cells
+	 */
+	public String getCell(int column, int row) {
+		int code = columns[column][row];
+		return code == MISSING ? null : dictionary.get(code);
+	}
+
+	/**
+	 * Returns true if no two rows have the same value in the given column.
+	 * 
+	 * @param column int the index of the column
+	 * @return boolean true if every value in the column is unique, otherwise false
+	 */
+	public boolean isUnique(int column) {
+		return firstDuplicateRow(new int[] { column }) == -1;
+	}
+
+	/**
+	 * Returns the index of the first row whose values in the given columns have
+	 * already been seen in an earlier row, treating the values in those columns
+	 * together as one composite key.
+	 * 
+	 * @param keyColumns int[] the indexes of the columns making up the key
+	 * @return int the index of the first duplicate row, or -1 if every key is unique
+	 */
+	public int firstDuplicateRow(int[] keyColumns) {
+		if (keyColumns.length == 1) {
+			int[] column = columns[keyColumns[0]];
+			BitSet seen = new BitSet(dictionary.size());
+			boolean seenMissing = false;
+			for (int row = 0; row < rowCount; row++) {
+				int code = column[row];
+				if (code == MISSING) {
+					if (seenMissing) {
+						return row;
+					}
+					seenMissing = true;
+				} else if (seen.get(code)) {
+					return row;
+				} else {
+					seen.set(code);
+				}
+			}
+			return -1;
+		}
+
+		Set<CompositeKey> seen = new HashSet<>(rowCount * 2);
+		for (int row = 0; row < rowCount; row++) {
+			int[] key = new int[keyColumns.length];
+			for (int i = 0; i < keyColumns.length; i++) {
+				key[i] = columns[keyColumns[i]][row];
+			}
+			if (!seen.add(new CompositeKey(key))) {
+				return row;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the first value in the given column that does not contain the given
+	 * text. Each distinct value is only checked once, no matter how many rows it
+	 * appears in.
+	 * 
+	 * @param column int the index of the column
+	 * @param textToMatch String the text every cell should contain
+	 * @return int the index of the first row that does not contain the text, or -1 if they all do
+	 */
+	public int firstRowNotContaining(int column, String textToMatch) {
+		int[] cells = columns[column];
+		// 0 means not checked yet, 1 means it contains the text, 2 means it does not.
+		byte[] results = new byte[dictionary.size()];
+		for (int row = 0; row < rowCount; row++) {
+			int code = cells[row];
+			if (code == MISSING) {
+				return row;
+			}
+			if (results[code] == 0) {
+				results[code] = dictionary.get(code).contains(textToMatch) ? (byte) 1 : (byte) 2;
+			}
+			if (results[code] == 2) {
+				return row;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The dictionary codes of a row's cells in several columns, used as a hash key.
+	 */
+	private static final class CompositeKey {
+		private final int[] codes;
+		private final int hash;
+
+		private CompositeKey(int[] codes) {
+			this.codes = codes;
+			this.hash = Arrays.hashCode(codes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof CompositeKey && Arrays.equals(codes, ((CompositeKey) other).codes);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package sentinel.elements;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import sentinel.exceptions.NoSuchElementException;
+import sentinel.exceptions.NoSuchSelectorException;
+import sentinel.utils.SelectorType;
+
+/**
+ * Finds the WebElements for several PageElements using a single injected
+ * JavaScript call instead of one findElement call per element. Each PageElement
+ * passed in stores the WebElement that was found for it, so the actions that
+ * follow do not have to look it up again.
+ * <p>
+ * Any PageElement that the script could not find, or whose selector type the
+ * script does not handle, is looked up on its own with findElement. This means
+ * a missing element throws the same NoSuchElementException it always has.
+ * <p>
+ * <b>Example:</b>
+ * <p>
+ * <code>ElementResolver.resolve(username_field(), password_field());</code>
+ */
+public class ElementResolver {
+	private static final Logger log = LogManager.getLogger(ElementResolver.class.getName()); // Create a logger.
+
+	/**
+	 * JavaScript function that finds a single element in the current document for
+	 * a selector type and selector value, returning null if nothing matches.
+	 */
+	static final String LOCATE_FUNCTION = "function sentinelLocate(type, value) {"
+			+ "  function byText(text, partial) {"
+			+ "    var links = document.getElementsByTagName('a');"
+			+ "    for (var i = 0; i < links.length; i++) {"
+			+ "      var t = (links[i].innerText || links[i].textContent || '').trim();"
+			+ "      if (partial ? t.indexOf(text) >= 0 : t === text) { return links[i]; }"
+			+ "    }"
+			+ "    return null;"
+			+ "  }"
+			+ "  try {"
+			+ "    switch (type) {"
+			+ "    case 'CSS': return document.querySelector(value);"
+			+ "    case 'ID': return document.getElementById(value);"
+			+ "    case 'NAME': return document.getElementsByName(value)[0] || null;"
+			+ "    case 'PARTIALTEXT': return byText(value, true);"
+			+ "    case 'TEXT': return byText(value, false);"
+			+ "    case 'XPATH': var node = document.evaluate(value, document, null, 9, null).singleNodeValue;"
+			+ "      return node && node.nodeType === 1 ? node : null;"
+			+ "    }"
+			+ "  } catch (e) {}"
+			+ "  return null;"
+			+ "}";
+
+	private static final String RESOLVE_SCRIPT = LOCATE_FUNCTION
+			+ "var locators = arguments[0], results = [];"
+			+ "for (var i = 0; i < locators.length; i++) {"
+			+ "  results.push(sentinelLocate(locators[i][0], locators[i][1]));"
+			+ "}"
+			+ "return results;";
+
+	private ElementResolver() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * Returns true if the locator script knows how to find elements using the given
+	 * selector type.
+	 * 
+	 * @param selectorType SelectorType the selector type to check
+	 * @return boolean true if the selector type can be found by script, otherwise false
+	 */
+	static boolean isScriptable(SelectorType selectorType) {
+		switch (selectorType) {
+		case CSS:
+		case ID:
+		case NAME:
+		case PARTIALTEXT:
+		case TEXT:
+		case XPATH:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Finds the WebElements for all the PageElements passed in using one round trip
+	 * to the browser.
+	 * 
+	 * @see ElementResolver#resolve(List)
+	 * @param elements PageElement... the elements to resolve
+	 * @return List&lt;WebElement&gt; the WebElements found, in the same order as the PageElements passed in
+	 * @throws NoSuchSelectorException if the selector type of an element is invalid
+	 * @throws NoSuchElementException if an element cannot be found
+	 */
+	public static List<WebElement> resolve(PageElement... elements) throws NoSuchSelectorException, NoSuchElementException {
+		return resolve(Arrays.asList(elements));
+	}
+
+	/**
+	 * Finds the WebElements for all the PageElements passed in using one round trip
+	 * to the browser. PageElements that already have a WebElement stored are not
+	 * looked up again. If the driver cannot execute JavaScript, or the script
+	 * fails, every element is looked up on its own.
+	 * 
+	 * @param elements List&lt;? extends PageElement&gt; the elements to resolve
+	 * @return List&lt;WebElement&gt; the WebElements found, in the same order as the PageElements passed in
+	 * @throws NoSuchSelectorException if the selector type of an element is invalid
+	 * @throws NoSuchElementException if an element cannot be found
+	 */
+	public static List<WebElement> resolve(List<? extends PageElement> elements) throws NoSuchSelectorException, NoSuchElementException {
+		List<PageElement> pending = new ArrayList<>();
+		List<List<String>> locators = new ArrayList<>();
+		for (PageElement element : elements) {
+			if (!element.isResolved() && isScriptable(element.selectorType)) {
+				pending.add(element);
+				locators.add(Arrays.asList(element.selectorType.name(), element.selectorValue));
+			}
+		}
+
+		if (pending.size() > 1) {
+			WebDriver driver = pending.get(0).driver;
+			if (driver instanceof JavascriptExecutor) {
+				try {
+					Object result = ((JavascriptExecutor) driver).executeScript(RESOLVE_SCRIPT, locators);
+					if (result instanceof List) {
+						List<?> found = (List<?>) result;
+						int resolved = 0;
+						for (int i = 0; i < pending.size() && i < found.size(); i++) {
+							if (found.get(i) instanceof WebElement) {
+								pending.get(i).setResolvedElement((WebElement) found.get(i));
+								resolved++;
+							}
+						}
+						log.trace("Resolved {} of {} elements in one script call.", resolved, pending.size());
+					}
+				} catch (WebDriverException e) {
+					log.debug("Batch element lookup failed, falling back to individual lookups: {}", e.getMessage());
+				}
+			}
+		}
+
+		// Anything not found by the script is looked up on its own.
+		List<WebElement> webElements = new ArrayList<>();
+		for (PageElement element : elements) {
+			webElements.add(element.element());
+		}
+		return webElements;
+	}
+}
@@ -0,0 +1,197 @@
+package sentinel.elements;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import sentinel.exceptions.NoSuchElementException;
+
+/**
+ * Waits for a condition on a PageElement inside the browser instead of polling
+ * over the wire. Each executeAsyncScript call installs a MutationObserver
+ * on the page, checks the condition every time the DOM changes, and calls back
+ * as soon as it is met or the timeout runs out. A slow in-page poll also runs
+ * to catch changes that do not mutate the DOM, such as a CSS transition
+ * finishing. The STAYS_ABSENT condition works the other way round: it
+ * returns as soon as the element shows up, or once the timeout runs out with
+ * the element still missing.
+ * <p>
+ * The driver's script timeout is never changed, since it is shared by every
+ * caller of the session. Instead, long waits are split into slices shorter
+ * than the default script timeout (30 seconds in the W3C protocol), and the
+ * script is called again until the condition is met or the time runs out.
+ * <p>
+ * If the condition needs the element and it never shows up, the wait fails
+ * with the same NoSuchElementException a lookup would, so a misspelled or
+ * missing element is not mistaken for one that is hidden or disabled.
+ * <p>
+ * When the wait cannot be run in the browser (the driver cannot execute
+ * JavaScript, the selector type cannot be located by script, or the script
+ * fails) null is returned, and the caller falls back to a WebDriverWait for
+ * whatever is left of the timeout. A session whose script timeout is shorter
+ * than a slice fails its first slice, so this costs at most one script
+ * timeout, not a second full wait.
+ */
+class ElementWait {
+	private static final Logger log = LogManager.getLogger(ElementWait.class.getName()); // Create a logger.
+
+	/** The longest single in-page wait, well inside the default script timeout. */
+	private static final long SLICE_MILLIS = 5000L;
+
+	/**
+	 * Conditions that can be waited for.
+	 */
+	enum Condition {
+		/** The element is in the DOM. */
+		PRESENT,
+		/** The element is in the DOM and visible. */
+		VISIBLE,
+		/** The element is visible and enabled, the same as ExpectedConditions.elementToBeClickable. */
+		ENABLED,
+		/** The element is not in the DOM. */
+		ABSENT,
+		/** The element is not in the DOM and does not appear before the timeout runs out. */
+		STAYS_ABSENT
+	}
+
+	private static final String WAIT_SCRIPT = "var callback = arguments[arguments.length - 1];"
+			+ "var type = arguments[0], value = arguments[1], condition = arguments[2], timeout = arguments[3];"
+			+ ElementResolver.LOCATE_FUNCTION
+			+ "function visible(el) {"
+			+ "  if (!document.documentElement.contains(el)) { return false; }"
+			+ "  for (var e = el; e && e.nodeType === 1; e = e.parentElement) {"
+			+ "    var style = window.getComputedStyle(e);"
+			+ "    if (style.display === 'none' || parseFloat(style.opacity) === 0) { return false; }"
+			+ "  }"
+			+ "  var own = window.getComputedStyle(el);"
+			+ "  if (own.visibility === 'hidden' || own.visibility === 'collapse') { return false; }"
+			+ "  return el.getClientRects().length > 0;"
+			+ "}"
+			+ "function enabled(el) {"
+			+ "  return !el.disabled && !(el.closest && el.closest('fieldset[disabled]'));"
+			+ "}"
+			+ "function check() {"
+			+ "  var el = sentinelLocate(type, value);"
+			+ "  switch (condition) {"
+			+ "  case 'ABSENT': return [!el, null];"
+			+ "  case 'STAYS_ABSENT': return [!el, null];"
+			+ "  case 'PRESENT': return [!!el, el];"
+			+ "  case 'VISIBLE': return [!!el && visible(el), el];"
+			+ "  case 'ENABLED': return [!!el && visible(el) && enabled(el), el];"
+			+ "  }"
+			+ "  return [false, el];"
+			+ "}"
+			+ "var result = check();"
+			// Most conditions finish as soon as they are met; STAYS_ABSENT finishes as soon as it is broken.
+			+ "var finishWhen = condition !== 'STAYS_ABSENT';"
+			+ "if (result[0] === finishWhen || timeout <= 0) { callback(result); return; }"
+			+ "var done = false, observer = null, poll = null, timer = null;"
+			+ "function finish(result) {"
+			+ "  if (done) { return; }"
+			+ "  done = true;"
+			+ "  if (observer) { observer.disconnect(); }"
+			+ "  clearInterval(poll);"
+			+ "  clearTimeout(timer);"
+			+ "  callback(result);"
+			+ "}"
+			+ "function recheck() { var r = check(); if (r[0] === finishWhen) { finish(r); } }"
+			+ "if (window.MutationObserver) {"
+			+ "  observer = new MutationObserver(recheck);"
+			+ "  observer.observe(document, { childList: true, subtree: true, attributes: true, characterData: true });"
+			+ "}"
+			+ "poll = setInterval(recheck, 250);"
+			+ "timer = setTimeout(function() { finish(check()); }, timeout);";
+
+	private static final String ABSENT_SCRIPT = ElementResolver.LOCATE_FUNCTION
+			+ "return !sentinelLocate(arguments[0], arguments[1]);";
+
+	private ElementWait() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * Waits in the browser for the given condition on the element, for up to the
+	 * given number of milliseconds. If the element is found, it is stored on the
+	 * PageElement so the next action does not need to look it up.
+	 * 
+	 * @param element PageElement the element to wait on
+	 * @param condition Condition the condition to wait for
+	 * @param timeoutMillis long the longest time to wait, in milliseconds
+	 * @return Boolean true if the condition was met, false if it was not met in
+	 *         time, or null if the wait could not be run in the browser
+	 * @throws NoSuchElementException if the condition is PRESENT, VISIBLE or ENABLED and the element was never found
+	 */
+	static Boolean until(PageElement element, Condition condition, long timeoutMillis) throws NoSuchElementException {
+		WebDriver driver = element.driver;
+		if (!(driver instanceof JavascriptExecutor) || !ElementResolver.isScriptable(element.selectorType)) {
+			return null;
+		}
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		try {
+			boolean met;
+			WebElement found;
+			boolean everFound = false;
+			while (true) {
+				long slice = Math.max(0, Math.min(SLICE_MILLIS, deadline - System.currentTimeMillis()));
+				Object result = ((JavascriptExecutor) driver).executeAsyncScript(WAIT_SCRIPT,
+						element.selectorType.name(), element.selectorValue, condition.name(), slice);
+				if (!(result instanceof List) || ((List<?>) result).size() != 2) {
+					return null;
+				}
+				List<?> values = (List<?>) result;
+				met = Boolean.TRUE.equals(values.get(0));
+				found = values.get(1) instanceof WebElement ? (WebElement) values.get(1) : null;
+				everFound |= found != null;
+				// STAYS_ABSENT is decided as soon as the element shows up; everything else as soon as it is met.
+				boolean decided = condition == Condition.STAYS_ABSENT ? !met : met;
+				if (decided || System.currentTimeMillis() >= deadline) {
+					break;
+				}
+			}
+			if (!met && !everFound && condition != Condition.ABSENT && condition != Condition.STAYS_ABSENT) {
+				throw element.elementNotFound(null);
+			}
+			if (found != null) {
+				element.setResolvedElement(found);
+			}
+			if (!met && found != null && (condition == Condition.VISIBLE || condition == Condition.ENABLED)) {
+				// The page could not tell; let WebDriver decide with its own visibility rules.
+				met = found.isDisplayed() && (condition == Condition.VISIBLE || found.isEnabled());
+			}
+			log.trace("In-page wait for {} {} using {} \"{}\": {}", element.getClass().getSimpleName(), condition,
+					element.selectorType, element.selectorValue, met);
+			return met;
+		} catch (WebDriverException e) {
+			log.debug("In-page wait failed, falling back to polling: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Checks right now, with one synchronous script call and no waiting, whether the
+	 * element is missing from the page. No driver timeouts are read or changed.
+	 * 
+	 * @param element PageElement the element to look for
+	 * @return Boolean true if the element is not on the page, false if it is, or null
+	 *         if the check could not be run in the browser
+	 */
+	static Boolean isAbsent(PageElement element) {
+		WebDriver driver = element.driver;
+		if (!(driver instanceof JavascriptExecutor) || !ElementResolver.isScriptable(element.selectorType)) {
+			return null;
+		}
+		try {
+			Object result = ((JavascriptExecutor) driver).executeScript(ABSENT_SCRIPT, element.selectorType.name(),
+					element.selectorValue);
+			return result instanceof Boolean ? (Boolean) result : null;
+		} catch (WebDriverException e) {
+			log.debug("In-page existence check failed, falling back to findElements: {}", e.getMessage());
+			return null;
+		}
+	}
+}
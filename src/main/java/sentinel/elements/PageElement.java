@@ -3,7 +3,7 @@ package sentinel.elements;
 import java.awt.AWTException;
 import java.awt.Robot;
 import java.awt.event.KeyEvent;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,6 +16,7 @@ import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.FluentWait;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
 import sentinel.exceptions.ConfigurationMappingException;
@@ -27,7 +28,7 @@ import sentinel.exceptions.MissingConfigurationException;
 import sentinel.exceptions.SentinelException;
 import sentinel.exceptions.NoSuchElementException;
 import sentinel.exceptions.NoSuchSelectorException;
-import sentinel.pages.PageManager;
+import sentinel.utils.CommandTracer;
 import sentinel.utils.ConfigurationManager;
 import sentinel.utils.SelectorType;
 import sentinel.utils.StringUtils;
@@ -57,10 +58,13 @@ import sentinel.utils.WebDriverFactory;
  * <li>Remove the need to pass in a driver class instance for the creation of
  * every element and delay that binding to a singleton class that can be
  * changed, allowing the use of multiple drivers through a testing session.</li>
- * <li>Look into creating a Selenium WebElement member variable to store the
- * element after the first time it is used. This could increase the speed of
- * calling objects that get called often.</li>
  * </ul>
+ * <p>
+ * Once an element has been found, the Selenium WebElement is stored and reused
+ * for every following call on the same PageElement, so chained calls such as
+ * click, clear and sendKeys only cost one findElement round trip. If the stored
+ * WebElement has gone stale (e.g. the DOM was re-rendered), it is looked up
+ * again and the action is retried once.
  */
 public class PageElement {
 	private static final Logger log = LogManager.getLogger(PageElement.class.getName()); // Create a logger.
@@ -70,6 +74,17 @@ public class PageElement {
 
 	protected WebDriver driver;
 
+	// The WebElement found the first time this PageElement was used.
+	private WebElement cachedElement = null;
+
+	// Index 0 holds lookups performed, index 1 holds lookups saved by the cache.
+	private static final ThreadLocal<long[]> lookupCounters = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[2];
+		}
+	};
+
 	/**
 	 * The constructor for a WebElement to initialize how an element is going to be
 	 * found when it is worked on by the WebDriver class. Takes a reference to the
@@ -86,54 +101,145 @@ public class PageElement {
 		this.driver = WebDriverFactory.getWebDriverAndHandleErrors();
 	}
 
+	/**
+	 * Returns the Selenium By object used to find this element based on its
+	 * selector type and selector value.
+	 * 
+	 * @return org.openqa.selenium.By the locator for this element
+	 * @throws NoSuchSelectorException if the selector type passed is invalid
+	 */
+	protected By getBy() throws NoSuchSelectorException {
+		switch (selectorType) {
+		case CSS:
+			return By.cssSelector(selectorValue);
+		case ID:
+			return By.id(selectorValue);
+		case NAME:
+			return By.name(selectorValue);
+		case PARTIALTEXT:
+			return By.partialLinkText(selectorValue);
+		case TEXT:
+			return By.linkText(selectorValue);
+		case XPATH:
+			return By.xpath(selectorValue);
+		default:
+			// This is here in case a new type is added to SelectorType and has not been
+			// implemented yet here.
+			String errorMessage = StringUtils.format(
+					"Unhandled selector type \"{}\" passed to Page Element base class. Could not resolve the reference. Refer to the Javadoc for valid options.",
+					selectorType);
+			throw new NoSuchSelectorException(errorMessage);
+		}
+	}
+
 	/**
 	 * Returns the Selenium WebElement if it can be found on the current page.
 	 * Provides late binding for elements so that the driver does not look for them
 	 * until they are called, at which point the driver should be on the correct
-	 * page.
+	 * page. The WebElement is only looked up the first time it is needed and is
+	 * reused after that.
 	 * 
 	 * @return org.openqa.selenium.WebElement the Selenium WebElement object type that can be acted upon
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 * @throws NoSuchElementException if the element cannot be found
 	 */
 	protected WebElement element() throws NoSuchSelectorException, NoSuchElementException {
-		WebElement element = null;
+		if (cachedElement != null) {
+			lookupCounters.get()[1]++;
+			return cachedElement;
+		}
 
+		By by = getBy();
 		try {
-			switch (selectorType) {
-			case CSS:
-				element = driver.findElement(By.cssSelector(selectorValue));
-			case ID:
-				element = driver.findElement(By.id(selectorValue));
-				break;
-			case NAME:
-				element = driver.findElement(By.name(selectorValue));
-				break;
-			case PARTIALTEXT:
-				element = driver.findElement(By.partialLinkText(selectorValue));
-				break;
-			case TEXT:
-				element = driver.findElement(By.linkText(selectorValue));
-				break;
-			case XPATH:
-				element = driver.findElement(By.xpath(selectorValue));
-				break;
-			default:
-				// This is here in case a new type is added to SelectorType and has not been
-				// implemented yet here.
-				String errorMessage = StringUtils.format(
-						"Unhandled selector type \"{}\" passed to Page Element base class. Could not resolve the reference. Refer to the Javadoc for valid options.",
-						selectorType);
-				throw new NoSuchSelectorException(errorMessage);
-			}
+			cachedElement = driver.findElement(by);
 		} catch (org.openqa.selenium.NoSuchElementException e) {
-			String errorMessage = StringUtils.format(
-					"{} element does not exist or is not visible using the {} value \"{}\". Assure you are on the page you think you are on, and that the element identifier you are using is correct.",
-					this.getClass().getSimpleName(), selectorType, selectorValue);
-			throw new NoSuchElementException(errorMessage, e);
+			throw elementNotFound(e);
+		}
+		lookupCounters.get()[0]++;
+
+		return cachedElement;
+	}
+
+	/**
+	 * Returns the exception thrown when this element cannot be found on the page.
+	 * 
+	 * @param cause Throwable the exception reported by the driver, or null if there was none
+	 * @return NoSuchElementException the exception to throw
+	 */
+	NoSuchElementException elementNotFound(Throwable cause) {
+		String errorMessage = StringUtils.format(
+				"{} element does not exist or is not visible using the {} value \"{}\". Assure you are on the page you think you are on, and that the element identifier you are using is correct.",
+				this.getClass().getSimpleName(), selectorType, selectorValue);
+		return cause == null ? new NoSuchElementException(errorMessage) : new NoSuchElementException(errorMessage, cause);
+	}
+
+	/**
+	 * Throws away the stored WebElement and looks it up again. Used when the stored
+	 * WebElement is no longer attached to the page.
+	 * 
+	 * @return org.openqa.selenium.WebElement the newly found Selenium WebElement
+	 * @throws NoSuchSelectorException if the selector type passed is invalid
+	 * @throws NoSuchElementException if the element cannot be found
+	 */
+	protected WebElement refreshElement() throws NoSuchSelectorException, NoSuchElementException {
+		log.trace("Stale reference for {} element using the {} value \"{}\". Looking it up again.",
+				this.getClass().getSimpleName(), selectorType, selectorValue);
+		cachedElement = null;
+		return element();
+	}
+
+	/**
+	 * Returns true if a WebElement has already been found for this PageElement.
+	 * 
+	 * @return boolean true if the WebElement is stored, otherwise false
+	 */
+	boolean isResolved() {
+		return cachedElement != null;
+	}
+
+	/**
+	 * Stores a WebElement that was found for this PageElement by some other means,
+	 * such as a batch lookup, so that the next action does not need to find it.
+	 * 
+	 * @param element org.openqa.selenium.WebElement the WebElement this PageElement refers to
+	 */
+	void setResolvedElement(WebElement element) {
+		try {
+			// A traced command on it should be recorded under this element's locator, as if it had been found with findElement.
+			cachedElement = CommandTracer.label(element, getBy().toString());
+		} catch (NoSuchSelectorException e) {
+			cachedElement = element;
 		}
+	}
+
+	/**
+	 * Returns the number of findElement calls made by PageElements on the current
+	 * thread since the counters were last reset.
+	 * 
+	 * @return long the number of element lookups performed
+	 */
+	public static long getElementLookupCount() {
+		return lookupCounters.get()[0];
+	}
+
+	/**
+	 * Returns the number of times a stored WebElement was reused on the current
+	 * thread instead of calling findElement since the counters were last reset.
+	 * 
+	 * @return long the number of element lookups saved
+	 */
+	public static long getSavedElementLookupCount() {
+		return lookupCounters.get()[1];
+	}
 
-		return element;
+	/**
+	 * Resets the element lookup counters for the current thread. Called at the
+	 * start of every scenario.
+	 */
+	public static void resetElementLookupCounters() {
+		long[] counters = lookupCounters.get();
+		counters[0] = 0;
+		counters[1] = 0;
 	}
 
 	/**
@@ -151,15 +257,28 @@ public class PageElement {
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 */
 	public PageElement sendKeys(String text) throws NoSuchSelectorException, NoSuchElementException {
-		element().click();
-		element().clear();
-		element().sendKeys(text);
+		try {
+			sendKeys(element(), text);
+		} catch (StaleElementReferenceException e) {
+			sendKeys(refreshElement(), text);
+		}
 		return this;
 	}
 
+	private static void sendKeys(WebElement element, String text) {
+		element.click();
+		element.clear();
+		element.sendKeys(text);
+	}
+
 	public PageElement javaScriptSendKeys(String text) throws SentinelException {
 		JavascriptExecutor jse = (JavascriptExecutor) driver;
-		jse.executeScript("arguments[0].value='" + text + "';", element());
+		String script = "arguments[0].value='" + text + "';";
+		try {
+			jse.executeScript(script, element());
+		} catch (StaleElementReferenceException e) {
+			jse.executeScript(script, refreshElement());
+		}
 
 		return this;
 	}
@@ -179,10 +298,11 @@ public class PageElement {
 	 */
 	public PageElement pressKeys(String text) throws AWTException, NoSuchSelectorException, NoSuchElementException {
 		// Ensure that the element has focus.
-		if ("input".equals(element().getTagName())) {
-			element().sendKeys("");
+		WebElement element = element();
+		if ("input".equals(element.getTagName())) {
+			element.sendKeys("");
 		} else {
-			new Actions(driver).moveToElement(element()).perform();
+			new Actions(driver).moveToElement(element).perform();
 		}
 
 		// Iterate through the string and press every key
@@ -226,12 +346,16 @@ public class PageElement {
 	 */
 	public PageElement click() throws NoSuchSelectorException, NoSuchElementException, ElementNotVisibleException, ConfigurationParseException, ConfigurationMappingException, MissingConfigurationException, FileNotFoundException, IOException {
 		long waitTime = ConfigurationManager.getDefaultTimeout();
+		WebElement element = element();
 		try {
-			new WebDriverWait(driver, waitTime).until(ExpectedConditions.elementToBeClickable(element())).click();
+			new WebDriverWait(driver, waitTime).until(ExpectedConditions.elementToBeClickable(element)).click();
 		} catch (WebDriverException e) {
 			try {
+				if (e instanceof StaleElementReferenceException) {
+					element = refreshElement();
+				}
 				JavascriptExecutor executor = (JavascriptExecutor) driver;
-				executor.executeScript("arguments[0].click();", element());
+				executor.executeScript("arguments[0].click();", element);
 			} catch (Exception e2) {
 				String message = StringUtils.format(
 						"{} element is not visible using the {} value \"{}\" and cannot be clicked. Make sure the element is visible on the page when you attempt to click it. Clicking was attempted once with a mouse click and once with the Return key. The total wait time was {} seconds.",
@@ -257,7 +381,11 @@ public class PageElement {
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 */
 	public PageElement clear() throws NoSuchSelectorException, NoSuchElementException {
-		element().clear();
+		try {
+			element().clear();
+		} catch (StaleElementReferenceException e) {
+			refreshElement().clear();
+		}
 		return this;
 	}
 
@@ -282,6 +410,9 @@ public class PageElement {
 	 * if the element is visible. This wait ensures that context-switching, such as
 	 * bringing up a pop-up, AJAX calls, etc. will not fail a test.
 	 * <p>
+	 * The wait is run inside the browser in a single call when possible, and
+	 * returns as soon as the element is enabled. Otherwise it is polled from here.
+	 * <p>
 	 * A StaleElementReferenceException can be thrown when testing a Bootstrap
 	 * website that uses divs as popups. We resolve this by catching the exception
 	 * and retrying it 5 times. If it still fails, we catch the exception and return
@@ -296,14 +427,21 @@ public class PageElement {
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 */
 	public boolean isEnabled(int seconds) throws NoSuchSelectorException, NoSuchElementException {
+		long deadline = System.currentTimeMillis() + seconds * 1000L;
+		Boolean enabled = ElementWait.until(this, ElementWait.Condition.ENABLED, seconds * 1000L);
+		if (enabled != null) {
+			return enabled;
+		}
 		int retries = 0;
+		WebElement element = element();
 		while (true) {
 			try {
-				return new WebDriverWait(driver, seconds).until(ExpectedConditions.elementToBeClickable(element()))
+				return remainingWait(deadline).until(ExpectedConditions.elementToBeClickable(element))
 						.isEnabled();
 			} catch (StaleElementReferenceException e) {
 				if (retries < 5) {
 					retries++;
+					element = refreshElement();
 					continue;
 				} else {
 					return false;
@@ -314,6 +452,15 @@ public class PageElement {
 		}
 	}
 
+	/**
+	 * Returns a wait that polls from here for whatever is left until the deadline,
+	 * so that time spent on an in-page wait that could not finish is not waited again.
+	 */
+	private FluentWait<WebDriver> remainingWait(long deadline) {
+		long remaining = Math.max(0, deadline - System.currentTimeMillis());
+		return new WebDriverWait(driver, 0).withTimeout(Duration.ofMillis(remaining));
+	}
+
 	/**
 	 * Validates whether or not the element is selected.
 	 * @return boolean true if the element is selected, false if it is not
@@ -321,7 +468,11 @@ public class PageElement {
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 */
 	public boolean isSelected() throws NoSuchSelectorException, NoSuchElementException {
-		return element().isSelected();
+		try {
+			return element().isSelected();
+		} catch (StaleElementReferenceException e) {
+			return refreshElement().isSelected();
+		}
 	}
 
 	/**
@@ -345,6 +496,9 @@ public class PageElement {
 	 * if the element is visible. This wait ensures that context-switching, such as
 	 * bringing up a pop-up, AJAX calls, etc. will not fail a test.
 	 * <p>
+	 * The wait is run inside the browser in a single call when possible, and
+	 * returns as soon as the element is visible. Otherwise it is polled from here.
+	 * <p>
 	 * A StaleElementReferenceException can be thrown when testing a Boostrap
 	 * website that uses divs as popups. We resolve this by catching the exception
 	 * and retrying it 5 times. If it still fails, we catch the exception and return
@@ -359,14 +513,21 @@ public class PageElement {
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 */
 	public boolean isDisplayed(int seconds) throws NoSuchSelectorException, NoSuchElementException  {
+		long deadline = System.currentTimeMillis() + seconds * 1000L;
+		Boolean displayed = ElementWait.until(this, ElementWait.Condition.VISIBLE, seconds * 1000L);
+		if (displayed != null) {
+			return displayed;
+		}
 		int retries = 0;
+		WebElement element = element();
 		while (true) {
 			try {
-				return new WebDriverWait(driver, seconds).until(ExpectedConditions.visibilityOf(element()))
+				return remainingWait(deadline).until(ExpectedConditions.visibilityOf(element))
 						.isDisplayed();
 			} catch (StaleElementReferenceException e) {
 				if (retries < 5) {
 					retries++;
+					element = refreshElement();
 					continue;
 				} else {
 					return false;
@@ -378,9 +539,15 @@ public class PageElement {
 	}
 
 	/**
-	 * Determines with 250 milliseconds (1/4 of a second) if an element is not present.
+	 * Determines right away, without waiting, if an element is not present.
 	 * This should be used when you expect an element to not be present and do not want
 	 * to slow down your tests waiting for the normal timeout time to expire.
+	 * <p>
+	 * The check is done with a single script call in the page, so it never changes the
+	 * driver's implicit wait and is safe to use when several sessions run at once. If the
+	 * script cannot be run, findElements is used instead, which waits for the implicit
+	 * wait before reporting that nothing was found.
+	 * 
 	 * @return boolean true if the element cannot be found, false if it is found
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
      * @throws MissingConfigurationException if the requested configuration property has not been set
@@ -390,46 +557,42 @@ public class PageElement {
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
 	 */
 	public boolean doesNotExist() throws NoSuchSelectorException, ConfigurationParseException, ConfigurationMappingException, MissingConfigurationException, IOException, FileNotFoundException {
-		// Reducing the time we have to wait for an expected failure.
-		PageManager.setTimeout(250, TimeUnit.MILLISECONDS);
-		WebElement element = null;
-		boolean flag = false;
+		By by = getBy();
+		Boolean absent = ElementWait.isAbsent(this);
+		if (absent == null) {
+			absent = driver.findElements(by).isEmpty();
+		}
+		log.trace("Return result: {}", absent);
+		return absent;
+	}
 
+	/**
+	 * Returns true if the element is not present and does not appear for the given
+	 * number of milliseconds. The page is watched from inside the browser, so this
+	 * returns as soon as the element shows up. Use this instead of doesNotExist() when
+	 * the element might be added shortly after the page changes.
+	 * 
+	 * @param stableMillis int the number of milliseconds the element must stay absent
+	 * @return boolean true if the element stayed absent, false if it is or became present
+	 * @throws NoSuchSelectorException if the selector type passed is invalid
+	 */
+	public boolean doesNotExist(int stableMillis) throws NoSuchSelectorException {
+		By by = getBy();
+		Boolean absent;
 		try {
-			switch (selectorType) {
-			case CSS:
-				element = driver.findElement(By.cssSelector(selectorValue));
-			case ID:
-				element = driver.findElement(By.id(selectorValue));
-				break;
-			case NAME:
-				element = driver.findElement(By.name(selectorValue));
-				break;
-			case PARTIALTEXT:
-				element = driver.findElement(By.partialLinkText(selectorValue));
-				break;
-			case TEXT:
-				element = driver.findElement(By.linkText(selectorValue));
-				break;
-			case XPATH:
-				element = driver.findElement(By.xpath(selectorValue));
-				break;
-			default:
-				// This is here in case a new type is added to SelectorType and has not been
-				// implemented yet here.
-				String errorMessage = StringUtils.format(
-						"Unhandled selector type \"{}\" passed to Page Element base class. Could not resolve the reference. Refer to the Javadoc for valid options.",
-						selectorType);
-				throw new NoSuchSelectorException(errorMessage);
-			}
-		} catch (org.openqa.selenium.NoSuchElementException e) {
-			// If we cannot find the element does not exist and we return true
-			if (element == null)
-				flag = true;
+			absent = ElementWait.until(this, ElementWait.Condition.STAYS_ABSENT, stableMillis);
+		} catch (NoSuchElementException e) {
+			// Only thrown for conditions that need the element to be there.
+			absent = true;
+		}
+		if (absent == null) {
+			absent = ElementWait.isAbsent(this);
 		}
-		PageManager.setDefaultTimeout();
-		log.trace("Return result: {}", flag);
-		return flag;
+		if (absent == null) {
+			absent = driver.findElements(by).isEmpty();
+		}
+		log.trace("Return result: {}", absent);
+		return absent;
 	}
 
 	/**
@@ -440,7 +603,11 @@ public class PageElement {
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 */
 	public String getText() throws NoSuchSelectorException, NoSuchElementException {
-		return element().getText();
+		try {
+			return element().getText();
+		} catch (StaleElementReferenceException e) {
+			return refreshElement().getText();
+		}
 	}
 
 	/**
@@ -469,7 +636,7 @@ public class PageElement {
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 */
 	public boolean hasClass(String text) throws NoSuchSelectorException, NoSuchElementException {
-		String classes = element().getAttribute("class");
+		String classes = getAttribute("class");
 		log.debug("Classes found on element " + this.getClass().getName().toString() + ": " + classes);
 		for (String c : classes.split(" ")) {
 			if (c.equals(text)) {
@@ -499,7 +666,7 @@ public class PageElement {
 	 * @throws NoSuchSelectorException if the selector type passed is invalid
 	 */
 	public boolean attributeEquals(String attribute, String value) throws NoSuchSelectorException, NoSuchElementException {
-		String values = element().getAttribute(attribute);
+		String values = getAttribute(attribute);
 		log.debug("Values found for attribute {} on element {}: {}", attribute, this.getClass().getName().toString(),
 				values);
 		if (values == value) {
@@ -515,4 +682,21 @@ public class PageElement {
 		return false;
 	}
 
-}
+	/**
+	 * Returns the value of the given attribute, looking the element up again once
+	 * if the stored WebElement has gone stale.
+	 * 
+	 * @param attribute String the attribute to retrieve
+	 * @return String the value of the attribute
+	 * @throws NoSuchElementException if the element cannot be found
+	 * @throws NoSuchSelectorException if the selector type passed is invalid
+	 */
+	private String getAttribute(String attribute) throws NoSuchSelectorException, NoSuchElementException {
+		try {
+			return element().getAttribute(attribute);
+		} catch (StaleElementReferenceException e) {
+			return refreshElement().getAttribute(attribute);
+		}
+	}
+
+}
\ No newline at end of file
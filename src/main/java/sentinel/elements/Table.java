@@ -8,18 +8,27 @@ import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 
 import sentinel.exceptions.SentinelException;
 import sentinel.exceptions.NoSuchColumnException;
 import sentinel.exceptions.NoSuchElementException;
 import sentinel.exceptions.NoSuchSelectorException;
+import sentinel.exceptions.PageNotFoundException;
+import sentinel.pages.PageManager;
+import sentinel.utils.ConfigurationManager;
 import sentinel.utils.SelectorType;
 import sentinel.utils.StringUtils;
 
 /**
  * Implements a Table WebElement. contains functionality for counting values, finding values inside a table, and other
  * management issues, such as finding a value in the same row.
+ * <p>
+ * By default the header and cell text of the whole table is read with one JavaScript call, instead of one call per row
+ * and per cell. Setting the tableExtraction configuration property to "element" reads the table one WebElement at a
+ * time, which is also what happens if the driver cannot run the script.
  */
 
 public class Table extends PageElement {
@@ -30,10 +39,36 @@ public class Table extends PageElement {
 	protected List<WebElement> rowElements = null; // Table Rows using <tr> tags
 	protected List<ArrayList<String>> rows = new ArrayList<ArrayList<String>>(); // All text values of every row
 	protected Map<String, ArrayList<String>> columns = new HashMap<>(); // All text values of every column
-	protected Map<Integer, List<ArrayList<String>>> tables = new HashMap<>(); // Way to hold values of the same table on
-																				// multiple pages. TODO: Might want to
-																				// put this in a multi-page table
-																				// object.
+	protected ColumnarTableModel model = null; // Indexed copy of the headers and rows used for verification
+	protected boolean extracted = false; // True once extractTable() has read the table, even if it was empty
+	// Snapshots of the same table on multiple pages, kept per thread and keyed by page object and table locator and then page number,
+	// so they survive the Table object being created again in each step.
+	private static final ThreadLocal<Map<String, Map<Integer, TableSnapshot>>> storedTables = new ThreadLocal<Map<String, Map<Integer, TableSnapshot>>>() {
+		@Override
+		protected Map<String, Map<Integer, TableSnapshot>> initialValue() {
+			return new HashMap<>();
+		}
+	};
+
+	/**
+	 * Returns the text of every &lt;th&gt; in the table, and the text of every &lt;td&gt; in every &lt;tr&gt; except the
+	 * first one, as [headers, rows]. This mirrors what getOrCreateHeaders and getOrCreateRows read element by element.
+	 */
+	private static final String EXTRACT_TABLE_SCRIPT = "var table = arguments[0];"
+			+ "function text(el) {"
+			+ "  var t = el.innerText !== undefined ? el.innerText : (el.textContent || '');"
+			+ "  return t.replace(/\\u00a0/g, ' ').replace(/^\\s+|\\s+$/g, '');"
+			+ "}"
+			+ "var headers = [], rows = [];"
+			+ "var ths = table.getElementsByTagName('th');"
+			+ "for (var h = 0; h < ths.length; h++) { headers.push(text(ths[h])); }"
+			+ "var trs = table.getElementsByTagName('tr');"
+			+ "for (var r = 1; r < trs.length; r++) {"
+			+ "  var tds = trs[r].getElementsByTagName('td'), cells = [];"
+			+ "  for (var c = 0; c < tds.length; c++) { cells.push(text(tds[c])); }"
+			+ "  rows.push(cells);"
+			+ "}"
+			+ "return [headers, rows];";
 
 	/**
 	 * Initializes how the WebElement is going to be found when it is worked on by the WebDriver class. 
@@ -50,21 +85,20 @@ public class Table extends PageElement {
 	 * Resets table data when comparing multiple pages of the same table.
 	 */
 	protected void reset() {
-		if (headerElements != null) {
-			headerElements.clear();
-		}
+		// The element lists must be found again, not emptied, or getOrCreate*Elements will return the empty lists.
+		headerElements = null;
 		if (headers != null) {
 			headers.clear();
 		}
-		if (rowElements != null) {
-			rowElements.clear();
-		}
+		rowElements = null;
 		if (rows != null) {
 			rows.clear();
 		}
 		if (columns != null) {
 			columns.clear();
 		}
+		model = null;
+		extracted = false;
 	}
 
 	/**
@@ -76,7 +110,10 @@ public class Table extends PageElement {
 	 * @throws SentinelException if there is a problem retrieving the header or rows
 	 */
 	public List<String> getOrCreateHeaders() throws SentinelException {
-		if (headers.isEmpty()) {
+		if (!extracted && headers.isEmpty() && rows.isEmpty()) {
+			extractTable();
+		}
+		if (headers.isEmpty() && !extracted) {
 			getOrCreateHeadersElements();
 			for (WebElement header : headerElements) {
 				String headerText = header.getText();
@@ -88,6 +125,10 @@ public class Table extends PageElement {
 		// row
 		if (headers.isEmpty()) {
 			getOrCreateRows();
+			if (rows.isEmpty()) {
+				log.trace("Headers: {}", headers);
+				return headers;
+			}
 			List<String> firstRow = rows.get(0);
 			for (String cell : firstRow) {
 				headers.add(cell);
@@ -149,9 +190,15 @@ public class Table extends PageElement {
 	 */
 
 	public List<ArrayList<String>> getOrCreateRows() throws SentinelException {
-		if (rows.isEmpty()) {
-			List<WebElement> dataRows = getOrCreateRowElements();
-			dataRows.remove(0); // Header row
+		if (!extracted && rows.isEmpty() && headers.isEmpty()) {
+			extractTable();
+		}
+		if (rows.isEmpty() && !extracted) {
+			// Copied so the cached row elements keep their header row.
+			List<WebElement> dataRows = new ArrayList<WebElement>(getOrCreateRowElements());
+			if (!dataRows.isEmpty()) {
+				dataRows.remove(0); // Header row
+			}
 			for (WebElement row : dataRows) {
 				List<WebElement> cellElements = row.findElements(By.tagName("td"));
 				ArrayList<String> cells = new ArrayList<String>();
@@ -165,6 +212,62 @@ public class Table extends PageElement {
 		return rows;
 	}
 
+	/**
+	 * Reads the headers and rows of the table with a single JavaScript call and
+	 * stores them in the headers and rows lists. Does nothing if script extraction
+	 * is turned off, the driver cannot execute JavaScript, or the script fails, in
+	 * which case the table is read one element at a time.
+	 * 
+	 * @return boolean true if the table was read by the script, otherwise false
+	 * @throws SentinelException if the table element cannot be found
+	 */
+	protected boolean extractTable() throws SentinelException {
+		if (!(driver instanceof JavascriptExecutor) || !isScriptExtractionEnabled()) {
+			return false;
+		}
+		Object result;
+		try {
+			result = ((JavascriptExecutor) driver).executeScript(EXTRACT_TABLE_SCRIPT, element());
+		} catch (WebDriverException e) {
+			log.debug("Table extraction script failed, reading the table one cell at a time: {}", e.getMessage());
+			return false;
+		}
+		if (!(result instanceof List) || ((List<?>) result).size() != 2) {
+			return false;
+		}
+		List<?> table = (List<?>) result;
+		for (Object header : (List<?>) table.get(0)) {
+			headers.add(String.valueOf(header));
+		}
+		for (Object row : (List<?>) table.get(1)) {
+			List<?> cellValues = (List<?>) row;
+			ArrayList<String> cells = new ArrayList<String>(cellValues.size());
+			for (Object cell : cellValues) {
+				cells.add(String.valueOf(cell));
+			}
+			rows.add(cells);
+		}
+		// No <th> tags, so the first row is used as the headers, as getOrCreateHeaders does.
+		if (headers.isEmpty() && !rows.isEmpty()) {
+			headers.addAll(rows.get(0));
+		}
+		extracted = true;
+		log.trace("Extracted {} headers and {} rows in one script call.", headers.size(), rows.size());
+		return true;
+	}
+
+	/**
+	 * Returns false if the tableExtraction configuration property is set to
+	 * "element", otherwise true.
+	 */
+	private static boolean isScriptExtractionEnabled() {
+		try {
+			return !"element".equalsIgnoreCase(ConfigurationManager.getProperty("tableExtraction"));
+		} catch (SentinelException e) {
+			return true;
+		}
+	}
+
 	/**
 	 * Returns number of row elements from getOrCreateRowElements
 	 * 
@@ -225,16 +328,24 @@ public class Table extends PageElement {
 	}
 
 	/**
-	 * Stores the current table rows on the current page in an index given by the
+	 * Stores a snapshot of the current table rows on the current page in an index given by the
 	 * integer passed in the pageNumber parameter. Used for comparing paginated
 	 * table data.
 	 * 
+	 * @see sentinel.elements.TableSnapshot
 	 * @param pageNumber int the page number under which to store the table data for comparison
 	 * @throws SentinelException if the rows cannot be found
 	 */
 	public void storeTable(int pageNumber) throws SentinelException {
 		reset();
-		tables.put(pageNumber, getOrCreateRows());
+		TableSnapshot snapshot = TableSnapshot.of(getOrCreateHeaders(), getOrCreateRows());
+		Map<String, Map<Integer, TableSnapshot>> tables = storedTables.get();
+		Map<Integer, TableSnapshot> pages = tables.get(getTableKey());
+		if (pages == null) {
+			pages = new HashMap<>();
+			tables.put(getTableKey(), pages);
+		}
+		pages.put(pageNumber, snapshot);
 	}
 
 	/**
@@ -250,15 +361,57 @@ public class Table extends PageElement {
 	/**
 	 * Compares the given number of a page stored in memory and compares it to the one
 	 * currently being displayed. If all the rows match, returns true. If any data
-	 * is different, returns false.
+	 * is different, or no page was stored with that number, returns false.
 	 * 
 	 * @param pageNumber int the stored page number to compare against the current page
 	 * @return boolean Table matches the one in memory.
 	 * @throws SentinelException if the rows cannot be found
 	 */
 	public boolean compareWithStoredTable(int pageNumber) throws SentinelException {
+		TableDiff diff = diffWithStoredTable(pageNumber);
+		return diff != null && diff.isEmpty();
+	}
+
+	/**
+	 * Returns the rows added, removed and changed between the page stored with the
+	 * given number and the table currently being displayed.
+	 * 
+	 * @param pageNumber int the stored page number to compare against the current page
+	 * @return TableDiff the differences, or null if no page was stored with that number
+	 * @throws SentinelException if the rows cannot be found
+	 */
+	public TableDiff diffWithStoredTable(int pageNumber) throws SentinelException {
+		Map<Integer, TableSnapshot> pages = storedTables.get().get(getTableKey());
+		TableSnapshot stored = pages == null ? null : pages.get(pageNumber);
+		if (stored == null) {
+			log.error("No table has been stored for page {} of {}.", pageNumber, getTableKey());
+			return null;
+		}
 		reset();
-		return (tables.get(pageNumber) == getOrCreateRows());
+		TableDiff diff = stored.diff(TableSnapshot.of(getOrCreateHeaders(), getOrCreateRows()));
+		log.debug("Page {} of {}: {}", pageNumber, getTableKey(), diff);
+		return diff;
+	}
+
+	/**
+	 * Throws away every table snapshot stored on the current thread. Called at the start of every scenario.
+	 */
+	public static void clearStoredTables() {
+		storedTables.get().clear();
+	}
+
+	/**
+	 * Returns the key stored pages of this table are kept under: the current page object's name and the table
+	 * locator, so tables with the same locator on different page objects do not overwrite each other.
+	 */
+	private String getTableKey() {
+		String pageName;
+		try {
+			pageName = PageManager.getPage().getName();
+		} catch (PageNotFoundException e) {
+			pageName = "";
+		}
+		return pageName + ":" + selectorType + ":" + selectorValue;
 	}
 
 	/**
@@ -302,39 +455,48 @@ public class Table extends PageElement {
 	}
 
 	/**
-	 * Returns true if getOrCreateColumns returns a value. Throws error if no column is found 
-	 * or wrong column is found.
+	 * Returns the indexed, column oriented model of the table, building it from the
+	 * headers and rows the first time it is needed.
+	 * 
+	 * @return ColumnarTableModel the model of the table
+	 * @throws SentinelException if the header or row elements cannot be found
+	 */
+	public ColumnarTableModel getOrCreateModel() throws SentinelException {
+		if (model == null) {
+			getOrCreateRows();
+			model = new ColumnarTableModel(getOrCreateHeaders(), rows);
+			log.trace("Table model built with {} rows and {} distinct values.", model.getRowCount(), model.getDistinctValueCount());
+		}
+		return model;
+	}
+
+	/**
+	 * Returns true if every cell in the given column contains the given text. Throws an error if the column does
+	 * not exist.
 	 * 
 	 * @param columnHeader String text in the given column header
 	 * @param textToMatch String text to find in the given column
-	 * @return boolean true if the given cell contains the give text, false if duplicates are found
+	 * @return boolean true if every cell in the column contains the given text, otherwise false
 	 * @throws SentinelException if the column or row creation fails
 	 */
 	public boolean verifyColumnCellsContain(String columnHeader, String textToMatch) throws SentinelException {
-		getOrCreateHeaders();
-		ArrayList<String> column = getOrCreateColumns().get(columnHeader);
-		if (column == null) {
+		ColumnarTableModel model = getOrCreateModel();
+		int column = model.getColumnIndex(columnHeader);
+		if (column == -1) {
 			log.error("Column does not exist. Header text: {} | Text to Match: {}", columnHeader, textToMatch);
 			throw new IllegalArgumentException("Column header \"" + columnHeader + "\" does not exist.");
 		}
-		for (String cell : column) {
-			try {
-				if (!cell.contains(textToMatch)) {
-					log.error("False result returned. Header text: {} | Cell data: {} | Text to Match: {} | Result: {}",
-							columnHeader, cell, textToMatch, cell.contains(textToMatch));
-					return false;
-				}
-			} catch (NullPointerException e) {
-				log.error("Header text: {} | Cell data: {} | Text to Match: {}", columnHeader, cell, textToMatch);
-				throw e;
-			}
-
+		int row = model.firstRowNotContaining(column, textToMatch);
+		if (row != -1) {
+			log.error("False result returned. Header text: {} | Cell data: {} | Text to Match: {} | Result: {}",
+					columnHeader, model.getCell(column, row), textToMatch, false);
+			return false;
 		}
 		return true;
 	}
 
 	/**
-	 * Returns &lt;code&gt;true&lt;/code&gt; if the column cells are unique
+	 * Returns &lt;code&gt;true&lt;/code&gt; if no two cells in the column have the same text.
 	 * 
 	 * @param columnHeader String text of the given column header to search
 	 * @return boolean true if column cells are unique, false if duplicates are found, throws error otherwise
@@ -345,30 +507,16 @@ public class Table extends PageElement {
 			log.error("IllegalArgumentException: Column header \"{}\" does not exist.", columnHeader);
 			throw new IllegalArgumentException("Column header \"" + columnHeader + "\" does not exist.");
 		}
-		getOrCreateHeaders();
-		ArrayList<String> column = getOrCreateColumns().get(columnHeader);
-		if (column.isEmpty()) {
+		ColumnarTableModel model = getOrCreateModel();
+		int column = model.getColumnIndex(columnHeader);
+		if (column == -1 || model.getRowCount() == 0) {
 			log.error("Header text: {}", columnHeader);
 			throw new IllegalArgumentException("Column header \"" + columnHeader + "\" does not exist.");
 		}
-		for (String cell : column) {
-			try {
-				int count = 0;
-				for (String cell2 : column) {
-					if (cell2.contains(cell)) {
-						count++;
-					}
-					if (count > 1) {
-						log.error("False result returned. Header text: {} | Cell data: {}", columnHeader, cell);
-						return false;
-					}
-				}
-
-			} catch (NullPointerException e) {
-				log.error("NullPointerException thrown. Header text: {} | Cell data: {}", columnHeader, cell);
-				throw e;
-			}
-
+		int row = model.firstDuplicateRow(new int[] { column });
+		if (row != -1) {
+			log.error("False result returned. Header text: {} | Cell data: {}", columnHeader, model.getCell(column, row));
+			return false;
 		}
 		return true;
 	}
@@ -381,12 +529,7 @@ public class Table extends PageElement {
 	 * @throws SentinelException if the headers do not exist
 	 */
 	public boolean verifyColumnExists(String columnName) throws SentinelException {
-		for (String header : getOrCreateHeaders()) {
-			if (header.contains(columnName)) {
-				return true;
-			}
-		}
-		return false;
+		return getOrCreateModel().columnExists(columnName);
 	}
 
 	/**
@@ -402,62 +545,41 @@ public class Table extends PageElement {
 	}
 
 	/**
-	 * Returns true if the cell values are unique for the given array of column names
+	 * Returns true if no two rows have the same values in all of the given columns taken together.
 	 * 
 	 * @param columnsHeader string[] the array of column name to validate
 	 * @return boolean true if all cells values are unique, false if any duplicates
 	 * @throws SentinelException if a column doesn't exist
 	 */
 	public boolean verifyRowCellsAreUnique(String[] columnsHeader) throws SentinelException {
-
-		getOrCreateHeaders();
-		getOrCreateRows();
+		ColumnarTableModel model = getOrCreateModel();
 		List<Integer> indexes = new ArrayList<Integer>();
 		for (String columnHeader : columnsHeader) {
-			if (verifyColumnExists(columnHeader) == false) {
+			if (model.columnExists(columnHeader) == false) {
 				String errorMessage = StringUtils.format("Column header \"{}\" does not exist.", columnHeader);
 				log.error(errorMessage);
 				throw new NoSuchColumnException(errorMessage);
 			}
+			List<String> headers = model.getHeaders();
 			for (int i = 0; i < headers.size(); i++) {
-
 				if (columnHeader.equals(headers.get(i)))
 					indexes.add(i);
 			}
 		}
-		for (List<String> cells : rows) {
-
-			String cellValue = getCellsValue(indexes, cells);
-
-			int count = 0;
-			for (List<String> cells2 : rows) {
-				String cellValue2 = getCellsValue(indexes, cells2);
-				if (cellValue2.contains(cellValue)) {
-					count++;
-				}
-				if (count > 1) {
-					log.trace("False result returned. Header text: {} | Cell data: {}", indexes, cellValue);
-					return false;
-				}
-			}
+		int[] keyColumns = new int[indexes.size()];
+		for (int i = 0; i < keyColumns.length; i++) {
+			keyColumns[i] = indexes.get(i);
+		}
+		if (keyColumns.length == 0) {
+			return model.getRowCount() < 2;
 		}
 
-		return true;
-	}
-
-	/**
-	 * Returns all the cells values in the listed columns
-	 * 
-	 * @param indexes List&lt;Integer&gt; listed column index
-	 * @param cells List&lt;String&gt; row cells
-	 * @return String of listed columns row values
-	 */
-	private String getCellsValue(List<Integer> indexes, List<String> cells) {
-		String cellValues = "";
-		for (int index = 0; index < indexes.size(); index++) {
-			cellValues = cellValues.concat(cells.get(indexes.get(index)));
+		int row = model.firstDuplicateRow(keyColumns);
+		if (row != -1) {
+			log.trace("False result returned. Header text: {} | Row: {}", indexes, row);
+			return false;
 		}
-		return cellValues;
+		return true;
 	}
 
 }
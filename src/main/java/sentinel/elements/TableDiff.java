@@ -0,0 +1,154 @@
+package sentinel.elements;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The differences between two TableSnapshots. Rows are matched by fingerprint,
+ * so a row that only moved is not reported. Of the rows left over, a stored row
+ * and a current row at the same position are reported as changed, and anything
+ * else as removed (only in the stored snapshot) or added (only in the current
+ * one). Building the diff takes time linear in the number of rows.
+ */
+public class TableDiff {
+	private final TableSnapshot stored;
+	private final TableSnapshot current;
+	private final boolean headersChanged;
+	private final List<Integer> added = new ArrayList<>();
+	private final List<Integer> removed = new ArrayList<>();
+	private final List<Integer> changed = new ArrayList<>();
+
+	private TableDiff(TableSnapshot stored, TableSnapshot current) {
+		this.stored = stored;
+		this.current = current;
+		this.headersChanged = !stored.getHeaders().equals(current.getHeaders());
+	}
+
+	/**
+	 * Returns the differences between a stored snapshot and a current one.
+	 * 
+	 * @param stored TableSnapshot the snapshot taken earlier
+	 * @param current TableSnapshot the snapshot to compare with it
+	 * @return TableDiff the differences
+	 */
+	public static TableDiff between(TableSnapshot stored, TableSnapshot current) {
+		TableDiff diff = new TableDiff(stored, current);
+
+		Map<Long, ArrayDeque<Integer>> unmatchedStored = new HashMap<>();
+		for (int row = 0; row < stored.getRowCount(); row++) {
+			Long fingerprint = stored.getFingerprint(row);
+			ArrayDeque<Integer> positions = unmatchedStored.get(fingerprint);
+			if (positions == null) {
+				positions = new ArrayDeque<>();
+				unmatchedStored.put(fingerprint, positions);
+			}
+			positions.add(row);
+		}
+
+		boolean[] storedMatched = new boolean[stored.getRowCount()];
+		boolean[] currentMatched = new boolean[current.getRowCount()];
+		for (int row = 0; row < current.getRowCount(); row++) {
+			ArrayDeque<Integer> positions = unmatchedStored.get(current.getFingerprint(row));
+			if (positions != null && !positions.isEmpty()) {
+				storedMatched[positions.poll()] = true;
+				currentMatched[row] = true;
+			}
+		}
+
+		int rows = Math.max(stored.getRowCount(), current.getRowCount());
+		for (int row = 0; row < rows; row++) {
+			boolean inStored = row < storedMatched.length && !storedMatched[row];
+			boolean inCurrent = row < currentMatched.length && !currentMatched[row];
+			if (inStored && inCurrent) {
+				diff.changed.add(row);
+			} else if (inStored) {
+				diff.removed.add(row);
+			} else if (inCurrent) {
+				diff.added.add(row);
+			}
+		}
+		return diff;
+	}
+
+	/**
+	 * Returns true if the headers and all the rows are the same.
+	 * 
+	 * @return boolean true if there are no differences, otherwise false
+	 */
+	public boolean isEmpty() {
+		return !headersChanged && added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+	}
+
+	/**
+	 * Returns true if the column headers are different.
+	 * 
+	 * @return boolean true if the headers changed, otherwise false
+	 */
+	public boolean headersChanged() {
+		return headersChanged;
+	}
+
+	/**
+	 * Returns the indexes, in the current snapshot, of rows that are not in the stored one.
+	 * 
+	 * @return List&lt;Integer&gt; the indexes of the added rows
+	 */
+	public List<Integer> getAddedRows() {
+		return Collections.unmodifiableList(added);
+	}
+
+	/**
+	 * Returns the indexes, in the stored snapshot, of rows that are not in the current one.
+	 * 
+	 * @return List&lt;Integer&gt; the indexes of the removed rows
+	 */
+	public List<Integer> getRemovedRows() {
+		return Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * Returns the indexes of rows whose content is different in the two snapshots.
+	 * 
+	 * @return List&lt;Integer&gt; the indexes of the changed rows
+	 */
+	public List<Integer> getChangedRows() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * Describes the differences, including the row text where the snapshots kept it.
+	 */
+	@Override
+	public String toString() {
+		if (isEmpty()) {
+			return "Tables match.";
+		}
+		StringBuilder text = new StringBuilder("Tables differ:");
+		if (headersChanged) {
+			text.append("\n  headers changed from ").append(stored.getHeaders()).append(" to ").append(current.getHeaders());
+		}
+		for (Integer row : changed) {
+			text.append("\n  row ").append(row + 1).append(" changed");
+			if (stored.hasBody() && current.hasBody()) {
+				text.append(": [").append(stored.getRow(row)).append("] -> [").append(current.getRow(row)).append("]");
+			}
+		}
+		for (Integer row : removed) {
+			text.append("\n  row ").append(row + 1).append(" removed");
+			if (stored.hasBody()) {
+				text.append(": [").append(stored.getRow(row)).append("]");
+			}
+		}
+		for (Integer row : added) {
+			text.append("\n  row ").append(row + 1).append(" added");
+			if (current.hasBody()) {
+				text.append(": [").append(current.getRow(row)).append("]");
+			}
+		}
+		return text.toString();
+	}
+}
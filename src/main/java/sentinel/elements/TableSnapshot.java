@@ -0,0 +1,147 @@
+package sentinel.elements;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compact, immutable copy of the contents of a Table at one point in time,
+ * used to compare pages of paginated results. Every row is stored as a 64-bit
+ * fingerprint of its cell text. The text of the rows is also kept, so that
+ * differences can be reported, unless it would go over a fixed size, in which
+ * case only the fingerprints are kept.
+ * 
+ * @see sentinel.elements.TableDiff
+ */
+public class TableSnapshot {
+	/** Snapshots bigger than this many characters only keep row fingerprints. */
+	public static final int MAX_BODY_CHARACTERS = 64 * 1024;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final char CELL_SEPARATOR = '\u001f';
+
+	private final List<String> headers;
+	private final long[] fingerprints;
+	private final String[] body;
+
+	private TableSnapshot(List<String> headers, long[] fingerprints, String[] body) {
+		this.headers = headers;
+		this.fingerprints = fingerprints;
+		this.body = body;
+	}
+
+	/**
+	 * Creates a snapshot of the given headers and rows.
+	 * 
+	 * @param headers List&lt;String&gt; the column headers
+	 * @param rows List&lt;? extends List&lt;String&gt;&gt; the cell text of every row
+	 * @return TableSnapshot the snapshot
+	 */
+	public static TableSnapshot of(List<String> headers, List<? extends List<String>> rows) {
+		long[] fingerprints = new long[rows.size()];
+		String[] body = new String[rows.size()];
+		long characters = 0;
+		for (int i = 0; i < rows.size(); i++) {
+			List<String> row = rows.get(i);
+			fingerprints[i] = fingerprint(row);
+			if (body != null) {
+				body[i] = join(row);
+				characters += body[i].length();
+				if (characters > MAX_BODY_CHARACTERS) {
+					body = null;
+				}
+			}
+		}
+		return new TableSnapshot(Collections.unmodifiableList(new ArrayList<>(headers)), fingerprints, body);
+	}
+
+	/**
+	 * Returns the 64-bit FNV-1a hash of the cells of a row. Each cell is followed by
+	 * a separator so that cells split differently do not hash the same.
+	 * 
+	 * @param row List&lt;String&gt; the cell text of the row
+	 * @return long the fingerprint of the row
+	 */
+	public static long fingerprint(List<String> row) {
+		long hash = FNV_OFFSET_BASIS;
+		for (String cell : row) {
+			String text = cell == null ? "" : cell;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+				hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+			}
+			hash = (hash ^ CELL_SEPARATOR) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static String join(List<String> row) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < row.size(); i++) {
+			if (i > 0) {
+				text.append(" | ");
+			}
+			text.append(row.get(i));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns the column headers at the time the snapshot was taken.
+	 * 
+	 * @return List&lt;String&gt; the column headers
+	 */
+	public List<String> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Returns the number of rows in the snapshot.
+	 * 
+	 * @return int the number of rows
+	 */
+	public int getRowCount() {
+		return fingerprints.length;
+	}
+
+	/**
+	 * Returns the fingerprint of the given row.
+	 * 
+	 * @param row int the index of the row
+	 * @return long the fingerprint of the row
+	 */
+	public long getFingerprint(int row) {
+		return fingerprints[row];
+	}
+
+	/**
+	 * Returns true if the text of the rows was kept.
+	 * 
+	 * @return boolean true if the row text is available, otherwise false
+	 */
+	public boolean hasBody() {
+		return body != null;
+	}
+
+	/**
+	 * Returns the text of the given row with cells separated by " | ".
+	 * 
+	 * @param row int the index of the row
+	 * @return String the text of the row, or null if only fingerprints were kept
+	 */
+	public String getRow(int row) {
+		return body == null ? null : body[row];
+	}
+
+	/**
+	 * Compares this snapshot, taken earlier, with a later one.
+	 * 
+	 * @param current TableSnapshot the snapshot to compare against
+	 * @return TableDiff the rows added, removed and changed in the current snapshot
+	 */
+	public TableDiff diff(TableSnapshot current) {
+		return TableDiff.between(this, current);
+	}
+}
@@ -0,0 +1,17 @@
+package sentinel.exceptions;
+
+public class AccountLeaseException extends SentinelException {
+
+    /**
+     * SentinelException to handle no test account becoming free in time
+     */
+    private static final long serialVersionUID = 2684719530264718391L;
+
+    public AccountLeaseException(String message) {
+        super(message);
+    }
+
+    public AccountLeaseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -17,8 +17,6 @@ import sentinel.utils.WebDriverFactory;
  * <ul>
  * <li>Turn this into an abstract class.</li>
  * <li>Create a PageFactory</li>
- * <li>Abstract out the driver creation to allow multiple drivers to be created
- * at once</li>
  * </ul>
  */
 public class Page {
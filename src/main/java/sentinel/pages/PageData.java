@@ -2,6 +2,7 @@ package sentinel.pages;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
 import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
@@ -24,6 +25,9 @@ import sentinel.utils.StringUtils;
  */
 public class PageData {
 	private static final Logger log = LogManager.getLogger(PageData.class); // Create a logger.
+	// ObjectMapper is thread safe once configured, so one is shared by every load.
+	private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory())
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 	// page urls to load in the web driver
 	public Map<String,String> urls;
 	// user account data 
@@ -60,8 +64,6 @@ public class PageData {
 	 * @throws IOException if the configuration file cannot be opened or read
 	 */
 	public static PageData loadYaml(File fileName) throws ConfigurationParseException, ConfigurationMappingException, IOException{
-		ObjectMapper mapper = new ObjectMapper(new YAMLFactory())
-				.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 		PageData pageData = null;
 		try {
 			pageData = mapper.readValue(fileName, PageData.class);
@@ -79,6 +81,33 @@ public class PageData {
 		
 	}
 
+	/**
+	 * Returns the usable PageData object from the given URL, e.g. a page configuration file
+	 * packaged as a classpath resource.
+	 * 
+	 * @param resource URL the location of the page configuration file
+	 * @return PageData the configured PageData
+	 * @throws ConfigurationParseException if error occurs when parsing page configuration data
+	 * @throws ConfigurationMappingException if error occurs when mapping page configuration data
+	 * @throws IOException if the configuration file cannot be opened or read
+	 */
+	public static PageData loadYaml(URL resource) throws ConfigurationParseException, ConfigurationMappingException, IOException{
+		PageData pageData = null;
+		try {
+			pageData = mapper.readValue(resource, PageData.class);
+		} catch (JsonParseException e) {
+			String errorMessage = StringUtils.format("Configuration file is not a valid YAML file: {}.", resource);
+			log.error(errorMessage);
+			throw new ConfigurationParseException(errorMessage, e);
+		} catch (JsonMappingException e) {
+			String errorMessage = StringUtils.format("Incorrect formatting in the configuration file: {}.", resource);
+			log.error(errorMessage);
+			throw new ConfigurationMappingException(errorMessage, e);
+		}
+
+		return pageData;
+	}
+
 	/**
 	 * Returns account data for the given environment
 	 * 
@@ -0,0 +1,184 @@
+package sentinel.pages;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import sentinel.exceptions.AccessDeniedException;
+import sentinel.exceptions.ConfigurationMappingException;
+import sentinel.exceptions.ConfigurationParseException;
+import sentinel.exceptions.FileNotFoundException;
+import sentinel.exceptions.SentinelException;
+import sentinel.utils.CompiledConfiguration;
+import sentinel.utils.ConfigurationManager;
+import sentinel.utils.StringUtils;
+
+/**
+ * Finds and caches the YAML configuration files for page objects.
+ * <p>
+ * The src/ directory is walked once, the first time a page configuration file
+ * is needed, and every .yml file found is indexed by name. If a file is not in
+ * the index, it is looked for as a classpath resource in each of the page object
+ * packages (e.g. pages/MyNewPage.yml) and then at the root of the classpath, so
+ * page objects packaged in a jar can carry their configuration with them.
+ * <p>
+ * Parsed PageData is kept and handed out again until the file it came from is
+ * modified, at which point it is parsed again. Files loaded from the classpath
+ * are parsed once. If a compiled configuration snapshot is on the classpath,
+ * pages are read from it instead of being parsed, unless their file has
+ * changed since the snapshot was compiled.
+ */
+public class PageDataCache {
+	private static final Logger log = LogManager.getLogger(PageDataCache.class); // Create a logger.
+	private static final String SOURCE_DIRECTORY = "src/";
+	private static final String EXTENSION = ".yml";
+
+	private static Map<String, File> index = null;
+	private static final ConcurrentHashMap<String, CachedPageData> pageDataCache = new ConcurrentHashMap<>();
+
+	private PageDataCache() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * PageData together with the file it was read from and that file's modification time.
+	 */
+	private static class CachedPageData {
+		private final PageData pageData;
+		private final File file;
+		private final long lastModified;
+
+		private CachedPageData(PageData pageData, File file, long lastModified) {
+			this.pageData = pageData;
+			this.file = file;
+			this.lastModified = lastModified;
+		}
+
+		private boolean isCurrent() {
+			return file == null || file.lastModified() == lastModified;
+		}
+	}
+
+	/**
+	 * Returns the configuration file with the given name from the src/ directory
+	 * index, building the index the first time it is called.
+	 * 
+	 * @param fileName String the full name of the file with extension to find
+	 * @return File the file found, or null if there is no such file under src/
+	 * @throws AccessDeniedException if a directory under src/ cannot be read
+	 */
+	public static synchronized File getConfigFile(String fileName) throws AccessDeniedException {
+		if (index == null) {
+			Map<String, File> files = new HashMap<>();
+			File sourceDirectory = new File(SOURCE_DIRECTORY);
+			if (sourceDirectory.isDirectory()) {
+				indexDirectory(sourceDirectory, files);
+			}
+			log.trace("Indexed {} page configuration files under {}", files.size(), sourceDirectory.getAbsoluteFile());
+			index = files;
+		}
+		return index.get(fileName);
+	}
+
+	/**
+	 * Adds every .yml file in the directory and its sub-directories to the index. The
+	 * first file found with a given name wins, in the same order the directory was
+	 * previously searched.
+	 */
+	private static void indexDirectory(File directory, Map<String, File> files) throws AccessDeniedException {
+		if (!directory.canRead()) {
+			throw new AccessDeniedException(directory.getAbsoluteFile().toString());
+		}
+		for (File temp : directory.listFiles()) {
+			if (temp.isDirectory()) {
+				indexDirectory(temp, files);
+			} else if (temp.getName().endsWith(EXTENSION) && !files.containsKey(temp.getName())) {
+				files.put(temp.getName(), temp.getAbsoluteFile());
+			}
+		}
+	}
+
+	/**
+	 * Returns the PageData for the given page name, parsing its configuration file
+	 * only if it has not been parsed before or has changed since.
+	 * 
+	 * @param pageName String the name of the page object
+	 * @return PageData the data for the page
+	 * @throws ConfigurationParseException if the configuration file is not valid YAML
+	 * @throws ConfigurationMappingException if the configuration file cannot be mapped to PageData
+	 * @throws FileNotFoundException if no configuration file exists for the page
+	 * @throws AccessDeniedException if a directory under src/ cannot be read
+	 * @throws IOException if the configuration file cannot be opened or read
+	 */
+	public static PageData getPageData(String pageName) throws ConfigurationParseException, ConfigurationMappingException, FileNotFoundException, AccessDeniedException, IOException {
+		CachedPageData cached = pageDataCache.get(pageName);
+		if (cached != null && cached.isCurrent()) {
+			return cached.pageData;
+		}
+
+		String fileName = pageName + EXTENSION;
+		PageData compiled = CompiledConfiguration.getPageData(pageName);
+		File file = compiled == null ? getConfigFile(fileName) : null;
+		if (compiled != null) {
+			File source = CompiledConfiguration.getPageSourceFile(pageName);
+			// Keep watching the source file, if there is one, so that an edit is picked up as before.
+			cached = source.exists() ? new CachedPageData(compiled, source, source.lastModified()) : new CachedPageData(compiled, null, 0L);
+		} else if (file != null) {
+			long lastModified = file.lastModified();
+			cached = new CachedPageData(PageData.loadYaml(file), file, lastModified);
+		} else {
+			URL resource = findResource(fileName);
+			if (resource == null) {
+				String errorMessage = StringUtils.format("Failed to locate the {} configuration file. Please ensure the file exists in the same directory as the page object.", fileName);
+				log.error(errorMessage);
+				throw new FileNotFoundException(fileName);
+			}
+			cached = new CachedPageData(PageData.loadYaml(resource), null, 0L);
+		}
+
+		if (cached.pageData != null) {
+			pageDataCache.put(pageName, cached);
+		}
+		return cached.pageData;
+	}
+
+	/**
+	 * Looks for the configuration file on the classpath in each page object package,
+	 * and then at the root of the classpath.
+	 */
+	private static URL findResource(String fileName) {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		if (classLoader == null) {
+			classLoader = PageDataCache.class.getClassLoader();
+		}
+
+		String[] packages = new String[0];
+		try {
+			packages = ConfigurationManager.getPageObjectPackageList();
+		} catch (SentinelException e) {
+			log.trace("Page object packages could not be read, only searching the classpath root: {}", e.getMessage());
+		}
+		for (String packageName : packages) {
+			URL resource = classLoader.getResource(packageName.trim().replace('.', '/') + "/" + fileName);
+			if (resource != null) {
+				return resource;
+			}
+		}
+		return classLoader.getResource(fileName);
+	}
+
+	/**
+	 * Throws away the file index and all cached PageData, so that the next lookup
+	 * walks src/ again.
+	 */
+	public static synchronized void clear() {
+		index = null;
+		pageDataCache.clear();
+	}
+}
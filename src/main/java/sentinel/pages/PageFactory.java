@@ -11,14 +11,24 @@ import sentinel.exceptions.FileNotFoundException;
 import sentinel.exceptions.IOException;
 import sentinel.exceptions.MissingConfigurationException;
 import sentinel.exceptions.PageNotFoundException;
+import sentinel.elements.PageElement;
+import sentinel.processor.ObjectRegistries;
 import sentinel.utils.ConfigurationManager;
+import sentinel.utils.MethodRegistry;
+import sentinel.utils.WebDriverFactory;
 /**
  * The Page Factory is a factory method that simply takes a string containing the name of a 
  * Page Object and returns the object to be worked on. It handles searching packages for page definitions.
  */
 public class PageFactory {
 	private static final Logger log = LogManager.getLogger(PageFactory.class); // Create a logger.
-	private static HashMap<String, Page> pages = new HashMap<String, Page>();
+	// Pages hold a reference to a driver, so each thread keeps its own set.
+	private static final ThreadLocal<HashMap<String, Page>> pages = new ThreadLocal<HashMap<String, Page>>() {
+		@Override
+		protected HashMap<String, Page> initialValue() {
+			return new HashMap<String, Page>();
+		}
+	};
 	private static String[] pageObjectPackagesList = null;
 	
 	private PageFactory() {
@@ -72,26 +82,39 @@ public class PageFactory {
 	 * @throws PageNotFoundException if page could not be built or retrieved.
 	 */
 	public static Page buildOrRetrievePage(String pageName) throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException, PageNotFoundException {
-		Page page = pages.get(pageName);
-		if (page != null) {
+		Page page = pages.get().get(pageName);
+		// A page built against a session this thread has since released is rebuilt against the current one.
+		if (page != null && page.driver == WebDriverFactory.getWebDriverAndHandleErrors()) {
 			return page;
 		} else {
+			page = null;
 			if (pageObjectPackagesList == null) {
 				pageObjectPackagesList = ConfigurationManager.getPageObjectPackageList();
 			}
 
+			// Check the registry generated at compile time first, as it does not throw exceptions on a miss.
 			for (String pageObjectPackage : pageObjectPackagesList) {
-				log.trace("pageObjectPackage: " + pageObjectPackage);
-				page = findPageInPackage(pageName, pageObjectPackage);
+				page = ObjectRegistries.newPage(pageObjectPackage + "." + pageName);
 				if (page != null) {
-					break; // If we have a page object, stop searching.
+					break;
+				}
+			}
+			if (page == null) {
+				for (String pageObjectPackage : pageObjectPackagesList) {
+					log.trace("pageObjectPackage: " + pageObjectPackage);
+					page = findPageInPackage(pageName, pageObjectPackage);
+					if (page != null) {
+						break; // If we have a page object, stop searching.
+					}
 				}
 			}
 		}
 		if(page == null) {
 			throw new PageNotFoundException("The page you want to test could not be built. At least one Page object package is required to run a test. Please add a pageObjectPackage property to your conf/sentinel.yml configuration file and try again.");
 		}
-		pages.put(pageName, page);
+		// Build the element lookup table once, when the page is first created.
+		MethodRegistry.getRegistry(page.getClass(), PageElement.class);
+		pages.get().put(pageName, page);
 		return page;
 	}
 
@@ -24,6 +24,7 @@ import sentinel.exceptions.PageNotFoundException;
 import sentinel.exceptions.URLNotFoundException;
 import sentinel.utils.ConfigurationManager;
 import sentinel.utils.StringUtils;
+import sentinel.utils.WebDriverFactory;
 
 /**
  * The Page Manager is a singleton class that manages what page the test is on.
@@ -32,15 +33,15 @@ import sentinel.utils.StringUtils;
  */
 public class PageManager {
 	private static final Logger log = LogManager.getLogger(PageManager.class);
-	// Only one page reference should exist. We aren't doing multi-threading.
-	private static Page page = null;
+	// Each thread running tests has its own current page, backed by that thread's driver.
+	private static final ThreadLocal<Page> page = new ThreadLocal<>();
 	// Only one page manager can exist.
 	private static PageManager instance = null;
-	// Page handle for the first window opened.
-	private static String parentHandle = null;
+	// Page handle for the first window opened, per thread.
+	private static final ThreadLocal<String> parentHandle = new ThreadLocal<>();
 
 	protected static WebDriver driver() {
-		return page.driver;
+		return page.get().driver;
 	} // Get the driver for the current page.
 
 	private PageManager() {
@@ -73,8 +74,9 @@ public class PageManager {
 			instance = new PageManager();
 
 		// Get a page from the page factory
-		PageManager.page = PageFactory.buildOrRetrievePage(pageName);
-		return page;
+		Page newPage = PageFactory.buildOrRetrievePage(pageName);
+		page.set(newPage);
+		return newPage;
 	}
 
 	/**
@@ -94,10 +96,11 @@ public class PageManager {
 					e.printStackTrace();
 			}
 	
-		if(page == null) {
+		Page current = page.get();
+		if(current == null) {
 			throw new PageNotFoundException("We could not find the Page you are looking for. Please check the pageObjectPackages configuration in conf/sentinel.yml and make sure it includes directory containing your page object.");
 		}
-		return page;
+		return current;
 	}
 
 	/**
@@ -109,7 +112,9 @@ public class PageManager {
 	 */
 	public static String openPage(String pageURL) {
 		open(pageURL);
-		return parentHandle = driver().getWindowHandle();
+		String handle = driver().getWindowHandle();
+		parentHandle.set(handle);
+		return handle;
 	}
 
 	/**
@@ -132,11 +137,35 @@ public class PageManager {
 	}
 
 	/**
-	 * Quits the current driver. Subsequent calls to the driver will fail. Should be
-	 * used at the end of tests only.
+	 * Quits every driver in the WebDriverFactory pool, including those used by
+	 * other threads. Subsequent calls to the driver will fail. Should be used at
+	 * the end of tests only.
 	 */
 	public static void quit() {
-		driver().quit();
+		page.remove();
+		parentHandle.remove();
+		WebDriverFactory.quit();
+	}
+
+	/**
+	 * Resets the current thread's driver and returns it to the WebDriverFactory
+	 * pool, closing every window except the parent window. Forgets the current
+	 * page, so the next scenario must set a page before using it.
+	 * 
+	 * @see sentinel.utils.WebDriverFactory#recycleWebDriver(String, boolean)
+	 * @param failed boolean true if the scenario that used the driver failed, in which case the driver is quit instead
+	 * @return boolean true if the driver was reset and kept, false if it was quit
+     * @throws MissingConfigurationException if the requested configuration property has not been set
+     * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+     * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+     * @throws IOException if other error occurs when mapping yml file into sentinel
+	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
+	 */
+	public static boolean recycle(boolean failed) throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
+		String handle = parentHandle.get();
+		page.remove();
+		parentHandle.remove();
+		return WebDriverFactory.recycleWebDriver(handle, failed);
 	}
 
 	/**
@@ -150,7 +179,7 @@ public class PageManager {
 	 */
 	public static Page navigateTo(String url) {
 		driver().navigate().to(url);
-		return page;
+		return page.get();
 	}
 
 	/**
@@ -163,7 +192,7 @@ public class PageManager {
 	 */
 	public static Page navigateForward() {
 		driver().navigate().forward();
-		return page;
+		return page.get();
 	}
 
 	/**
@@ -176,7 +205,7 @@ public class PageManager {
 	 */
 	public static Page navigateBack() {
 		driver().navigate().back();
-		return page;
+		return page.get();
 	}
 
 	/**
@@ -186,7 +215,7 @@ public class PageManager {
 	 */
 	public static Page refresh() {
 		driver().navigate().refresh();
-		return page;
+		return page.get();
 	}
 
 	/**
@@ -210,13 +239,13 @@ public class PageManager {
 			log.error(errorMessage);
 			throw new NoSuchWindowException(errorMessage);
 		}
-		if (parentHandle == null) {
+		if (parentHandle.get() == null) {
 			String errorMessage = "Parent Window cannot be found. Please open a window and restart your test.";
 			log.error(errorMessage);
 			throw new NoSuchWindowException(errorMessage);
 		}
 		for (String handle : handles) {
-			if (!handle.equals(parentHandle)) {
+			if (!handle.equals(parentHandle.get())) {
 				newHandle = handle;
 			}
 		}
@@ -256,8 +285,8 @@ public class PageManager {
 	 */
 	public static String closeChildWindow() {
 		close();
-		driver().switchTo().window(parentHandle);
-		return parentHandle;
+		driver().switchTo().window(parentHandle.get());
+		return parentHandle.get();
 	}
 
 	/**
@@ -290,12 +319,12 @@ public class PageManager {
 	public static String getCurrentUrl() throws URLNotFoundException, WebDriverException {
 		String currentUrl = null;
 		try {
-			currentUrl = page.getCurrentUrl();
+			currentUrl = page.get().getCurrentUrl();
 			log.trace(StringUtils.format("Current URL retrieved: {}", currentUrl));
 		} catch (WebDriverException e) {
 			String errorMessage = StringUtils.format(
 					"An error occured when trying to find the current URL for {}. Please check the URL and try again: {}",
-					page.getName(), e.getMessage());
+					page.get().getName(), e.getMessage());
 			log.error(errorMessage);
 			throw new URLNotFoundException(errorMessage);
 
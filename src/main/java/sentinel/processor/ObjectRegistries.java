@@ -0,0 +1,78 @@
+package sentinel.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import sentinel.apis.API;
+import sentinel.pages.Page;
+
+/**
+ * Gives the PageFactory and APIFactory access to every generated ObjectRegistry
+ * on the classpath. The registries are loaded once, the first time they are
+ * needed. If no registry was generated (e.g. annotation processing was turned
+ * off) every lookup returns null and the factories fall back to searching the
+ * page object packages with Class.forName.
+ */
+public class ObjectRegistries {
+	private static final Logger log = LogManager.getLogger(ObjectRegistries.class); // Create a logger.
+	private static List<ObjectRegistry> registries = null;
+
+	private ObjectRegistries() {
+		// Exists only to defeat instantiation.
+	}
+
+	private static synchronized List<ObjectRegistry> getRegistries() {
+		if (registries == null) {
+			List<ObjectRegistry> found = new ArrayList<>();
+			try {
+				for (ObjectRegistry registry : ServiceLoader.load(ObjectRegistry.class)) {
+					log.trace("Loaded generated object registry {}", registry.getClass().getName());
+					found.add(registry);
+				}
+			} catch (ServiceConfigurationError e) {
+				log.warn("Generated object registry could not be loaded, page objects will be found by class name: {}", e.getMessage());
+			}
+			registries = found;
+		}
+		return registries;
+	}
+
+	/**
+	 * Returns a new instance of the Page object with the given fully qualified
+	 * class name if any generated registry knows it.
+	 * 
+	 * @param className String the fully qualified class name of the page object
+	 * @return Page a new page object, or null if no registry knows the class
+	 */
+	public static Page newPage(String className) {
+		for (ObjectRegistry registry : getRegistries()) {
+			Page page = registry.newPage(className);
+			if (page != null) {
+				return page;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a new instance of the API object with the given fully qualified class
+	 * name if any generated registry knows it.
+	 * 
+	 * @param className String the fully qualified class name of the API object
+	 * @return API a new API object, or null if no registry knows the class
+	 */
+	public static API newAPI(String className) {
+		for (ObjectRegistry registry : getRegistries()) {
+			API api = registry.newAPI(className);
+			if (api != null) {
+				return api;
+			}
+		}
+		return null;
+	}
+}
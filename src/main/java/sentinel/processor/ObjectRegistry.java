@@ -0,0 +1,33 @@
+package sentinel.processor;
+
+import sentinel.apis.API;
+import sentinel.pages.Page;
+
+/**
+ * A registry of the Page and API objects found at compile time. Implementations
+ * are generated by the RegistryProcessor and found at runtime through the
+ * java.util.ServiceLoader mechanism.
+ * 
+ * @see sentinel.processor.RegistryProcessor
+ * @see sentinel.processor.ObjectRegistries
+ */
+public interface ObjectRegistry {
+
+	/**
+	 * Returns a new instance of the Page object with the given fully qualified
+	 * class name.
+	 * 
+	 * @param className String the fully qualified class name of the page object
+	 * @return Page a new page object, or null if this registry does not know the class
+	 */
+	Page newPage(String className);
+
+	/**
+	 * Returns a new instance of the API object with the given fully qualified class
+	 * name.
+	 * 
+	 * @param className String the fully qualified class name of the API object
+	 * @return API a new API object, or null if this registry does not know the class
+	 */
+	API newAPI(String className);
+}
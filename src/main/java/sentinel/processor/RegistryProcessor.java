@@ -0,0 +1,231 @@
+package sentinel.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that runs as part of the compile of a test project and
+ * generates an ObjectRegistry for every concrete Page and API subclass it sees.
+ * At runtime the PageFactory and APIFactory ask the generated registry for
+ * pages and APIs first, which is a switch on the class name instead of a
+ * Class.forName call (and a ClassNotFoundException) for every page object
+ * package searched.
+ * <p>
+ * The processor also checks the element methods on each Page (methods returning
+ * a PageElement) and the action methods on each API (methods returning an
+ * Action). Step definitions lower case the names they are given, so a method
+ * name containing upper case letters or no public no argument constructor on a
+ * page can never be used from a step. These are reported as warnings, or as
+ * errors when the sentinel.strict option is set to true.
+ * <p>
+ * The processor is picked up automatically from the sentinel jar. It supports
+ * the following options:
+ * <ul>
+ * <li>sentinel.registry - fully qualified name of the registry class to
+ * generate. Defaults to sentinel.generated.GeneratedObjectRegistry</li>
+ * <li>sentinel.strict - true to fail the build on element and action naming
+ * problems. Defaults to false</li>
+ * </ul>
+ * <b>Example:</b>
+ * <p>
+ * <code>&lt;compilerArgs&gt;&lt;arg&gt;-Asentinel.strict=true&lt;/arg&gt;&lt;/compilerArgs&gt;</code>
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions({ RegistryProcessor.REGISTRY_OPTION, RegistryProcessor.STRICT_OPTION })
+public class RegistryProcessor extends AbstractProcessor {
+	static final String REGISTRY_OPTION = "sentinel.registry";
+	static final String STRICT_OPTION = "sentinel.strict";
+	private static final String DEFAULT_REGISTRY = "sentinel.generated.GeneratedObjectRegistry";
+
+	private static final String PAGE_CLASS = "sentinel.pages.Page";
+	private static final String API_CLASS = "sentinel.apis.API";
+	private static final String ELEMENT_CLASS = "sentinel.elements.PageElement";
+	private static final String ACTION_CLASS = "sentinel.apis.Action";
+
+	private final Map<String, String> pages = new TreeMap<>();
+	private final Map<String, String> apis = new TreeMap<>();
+	private boolean generated = false;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement pageType = processingEnv.getElementUtils().getTypeElement(PAGE_CLASS);
+		TypeElement apiType = processingEnv.getElementUtils().getTypeElement(API_CLASS);
+		if (generated || roundEnv.processingOver() || (pageType == null && apiType == null)) {
+			return false;
+		}
+
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			collect(type, pageType, apiType);
+		}
+
+		if (!pages.isEmpty() || !apis.isEmpty()) {
+			generateRegistry();
+			generated = true;
+		}
+		return false;
+	}
+
+	/**
+	 * Records the given type, and any nested types, if it is a concrete subclass of
+	 * Page or API, and checks its element or action methods.
+	 */
+	private void collect(TypeElement type, TypeElement pageType, TypeElement apiType) {
+		for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+			if (nested.getModifiers().contains(Modifier.STATIC)) {
+				collect(nested, pageType, apiType);
+			}
+		}
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return;
+		}
+
+		Types types = processingEnv.getTypeUtils();
+		boolean isPage = pageType != null && !type.equals(pageType) && types.isSubtype(type.asType(), pageType.asType());
+		boolean isAPI = apiType != null && !type.equals(apiType) && types.isSubtype(type.asType(), apiType.asType());
+		if (!isPage && !isAPI) {
+			return;
+		}
+
+		String kind = isPage ? "Page" : "API";
+		String className = type.getQualifiedName().toString();
+		if (!type.getModifiers().contains(Modifier.PUBLIC) || !hasPublicNoArgConstructor(type)) {
+			report(type, "{0} object {1} needs to be public with a public no argument constructor to be created by the {0}Factory.", kind, className);
+			return;
+		}
+
+		// The binary name is what Class.forName, and so the factories, use for nested classes.
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		if (isPage) {
+			pages.put(binaryName, className);
+			checkMethods(type, ELEMENT_CLASS, "Element");
+		} else {
+			apis.put(binaryName, className);
+			checkMethods(type, ACTION_CLASS, "Action");
+		}
+	}
+
+	private static boolean hasPublicNoArgConstructor(TypeElement type) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks that every method on the type returning the given class can be
+	 * reached from a step definition.
+	 */
+	private void checkMethods(TypeElement type, String returnClass, String kind) {
+		TypeElement returnType = processingEnv.getElementUtils().getTypeElement(returnClass);
+		if (returnType == null) {
+			return;
+		}
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror erasedReturnType = types.erasure(returnType.asType());
+		Set<String> names = new HashSet<>();
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			if (!types.isSubtype(types.erasure(method.getReturnType()), erasedReturnType)) {
+				continue;
+			}
+			String name = method.getSimpleName().toString();
+			if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)
+					|| !method.getParameters().isEmpty()) {
+				report(method, "{0} {1} on {2} must be a public, non-static method with no arguments to be used from a step.",
+						kind, name, type.getSimpleName());
+			} else if (!name.equals(name.toLowerCase())) {
+				report(method, "{0} {1} on {2} contains upper case characters and can never be matched, because step names are lower cased before lookup.",
+						kind, name, type.getSimpleName());
+			} else if (!names.add(name)) {
+				report(method, "{0} {1} is declared more than once on {2}.", kind, name, type.getSimpleName());
+			}
+		}
+	}
+
+	private void report(Element element, String pattern, Object... args) {
+		boolean strict = Boolean.parseBoolean(processingEnv.getOptions().get(STRICT_OPTION));
+		processingEnv.getMessager().printMessage(strict ? Diagnostic.Kind.ERROR : Diagnostic.Kind.WARNING,
+				MessageFormat.format(pattern, args), element);
+	}
+
+	/**
+	 * Writes the registry source file and the service file that lets the
+	 * ServiceLoader find it.
+	 */
+	private void generateRegistry() {
+		String registryName = processingEnv.getOptions().get(REGISTRY_OPTION);
+		if (registryName == null || registryName.isEmpty()) {
+			registryName = DEFAULT_REGISTRY;
+		}
+		int lastDot = registryName.lastIndexOf('.');
+		String packageName = lastDot > 0 ? registryName.substring(0, lastDot) : null;
+		String simpleName = registryName.substring(lastDot + 1);
+
+		StringBuilder source = new StringBuilder();
+		if (packageName != null) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("/**\n * Generated by sentinel.processor.RegistryProcessor. Do not edit.\n */\n")
+				.append("public final class ").append(simpleName).append(" implements sentinel.processor.ObjectRegistry {\n\n");
+		appendFactoryMethod(source, "sentinel.pages.Page", "newPage", pages);
+		source.append("\n");
+		appendFactoryMethod(source, "sentinel.apis.API", "newAPI", apis);
+		source.append("}\n");
+
+		try {
+			JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(registryName);
+			try (Writer writer = sourceFile.openWriter()) {
+				writer.write(source.toString());
+			}
+			FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+					"META-INF/services/" + ObjectRegistry.class.getName());
+			try (Writer writer = serviceFile.openWriter()) {
+				writer.write(registryName + "\n");
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not generate the object registry " + registryName + ": " + e.getMessage());
+		}
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, MessageFormat.format(
+				"Generated {0} with {1} page(s) and {2} API(s).", registryName, pages.size(), apis.size()));
+	}
+
+	private static void appendFactoryMethod(StringBuilder source, String returnType, String methodName, Map<String, String> classes) {
+		source.append("\t@Override\n\tpublic ").append(returnType).append(" ").append(methodName)
+				.append("(String className) {\n\t\tswitch (className) {\n");
+		for (Map.Entry<String, String> entry : classes.entrySet()) {
+			source.append("\t\tcase \"").append(entry.getKey()).append("\":\n\t\t\treturn new ")
+					.append(entry.getValue()).append("();\n");
+		}
+		source.append("\t\tdefault:\n\t\t\treturn null;\n\t\t}\n\t}\n");
+	}
+}
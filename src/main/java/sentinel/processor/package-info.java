@@ -0,0 +1,6 @@
+/**
+ * Compile time generation of the page and API object registries.
+ * 
+ * @author Doug Noël
+ */
+package sentinel.processor;
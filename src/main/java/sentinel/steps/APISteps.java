@@ -8,6 +8,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import cucumber.api.Scenario;
+import cucumber.api.java.After;
 import cucumber.api.java.Before;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
@@ -32,6 +33,11 @@ public class APISteps {
         this.scenario = scenario;
         uid = scenario.getId();
     }
+
+    @After
+    public void after(Scenario scenario) {
+        APIManager.releaseScenario(scenario.getId());
+    }
     
 	private static String cleanAPIName(String apiName) {
 		return apiName.replaceAll("\\s", "") + "API";
@@ -48,8 +54,7 @@ public class APISteps {
      * Creates or retrieves an API with the given name for a determined UID.
      * 
      * By using UIDs, we can ensure that parallel tests use the correct API object.
-     * 
-     * TODO: Think about how to cleanup all these APIs
+     * The API, request and response are released when the scenario ends.
      * @param apiName name of the API object to create
      * @throws SentinelException if the API cannot be set
      */
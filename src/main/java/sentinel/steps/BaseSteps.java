@@ -3,19 +3,29 @@ package sentinel.steps;
 import static org.junit.Assert.assertTrue;
 import static sentinel.utils.ElementFunctions.*;
 
+import java.util.List;
+
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import cucumber.api.Scenario;
+import cucumber.api.java.After;
 import cucumber.api.java.Before;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.When;
 import sentinel.elements.Link;
+import sentinel.elements.PageElement;
+import sentinel.elements.Table;
+import sentinel.elements.Textbox;
 import sentinel.pages.PageManager;
+import sentinel.utils.AccountPool;
+import sentinel.utils.CommandTracer;
 import sentinel.utils.ConfigurationManager;
+import sentinel.utils.ScenarioValueStore;
 import sentinel.utils.SelectorType;
 import sentinel.utils.StringUtils;
+import sentinel.utils.WebDriverFactory;
 
 /**
  * Methods used to define basic operations. Other step files can extend or
@@ -32,6 +42,22 @@ public class BaseSteps {
     @Before
     public void before(Scenario scenario) {
         log.trace("Scenario ID: {} Scenario Name: {}", scenario.getId(), scenario.getName());
+        PageElement.resetElementLookupCounters();
+        Table.clearStoredTables();
+        CommandTracer.setScenario(scenario.getName());
+        ScenarioValueStore.startScenario(scenario.getId());
+    }
+
+    @After
+    public void after(Scenario scenario) throws Throwable {
+        log.debug("Scenario ID: {} Element lookups performed: {} Element lookups saved: {}", scenario.getId(),
+                PageElement.getElementLookupCount(), PageElement.getSavedElementLookupCount());
+        CommandTracer.setScenario(null);
+        ScenarioValueStore.endScenario(scenario.getId());
+        AccountPool.releaseAll();
+        if (WebDriverFactory.isSessionRecyclingEnabled()) {
+            PageManager.recycle(scenario.isFailed());
+        }
     }
     
     /**
@@ -338,13 +364,21 @@ public class BaseSteps {
      */
     @When("^I fill the account information( for account (.*?))? into the (.*?) and the (.*?)$")
     public void i_fill_the_account_information_into_the_username_field_and_the_password_field(String usingAccountName, String account, String username_field, String password_field) throws Throwable {
+        String username;
+        String password;
         if (usingAccountName == null) {
-            i_enter_text_in_the_textbox_named(ConfigurationManager.getUsername(), username_field);
-            i_enter_text_in_the_textbox_named(ConfigurationManager.getPassword(), password_field);            
+            username = ConfigurationManager.getUsername();
+            password = ConfigurationManager.getPassword();
         } else {
-            i_enter_text_in_the_textbox_named(ConfigurationManager.getUsername(account), username_field);
-            i_enter_text_in_the_textbox_named(ConfigurationManager.getPassword(account), password_field); 
-        }           
+            username = ConfigurationManager.getUsername(account);
+            password = ConfigurationManager.getPassword(account);
+        }
+        // Find both fields in one round trip before typing into them.
+        List<PageElement> fields = getElements(username_field, password_field);
+        ((Textbox) fields.get(0)).type(username);
+        ConfigurationManager.setValue(username_field, username);
+        ((Textbox) fields.get(1)).type(password);
+        ConfigurationManager.setValue(password_field, password);
     }
     
     /**
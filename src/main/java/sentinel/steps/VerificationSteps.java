@@ -14,6 +14,7 @@ import org.openqa.selenium.By;
 import org.openqa.selenium.Keys;
 
 import cucumber.api.java.en.Then;
+import sentinel.elements.TableDiff;
 import sentinel.pages.PageManager;
 import sentinel.utils.ConfigurationManager;
 import sentinel.utils.DownloadManager;
@@ -327,7 +328,9 @@ public class VerificationSteps {
      */
     @Then("^I should be shown the (\\d+)(?:st|nd|rd|th) page of results from the (.*)$")
     public void i_should_be_shown_the_x_page_of_results(int pageNumber, String tableName) throws Throwable {
-        assert ((boolean) getElementAsTable(tableName).compareWithStoredTable(pageNumber) == false);
+        TableDiff diff = getElementAsTable(tableName).diffWithStoredTable(pageNumber);
+        assertTrue("No results were stored for page " + pageNumber + " of the " + tableName + ".", diff != null);
+        assertTrue(diff.toString(), diff.isEmpty());
     }
     
     /**
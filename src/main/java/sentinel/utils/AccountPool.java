@@ -0,0 +1,266 @@
+package sentinel.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import sentinel.exceptions.AccountLeaseException;
+
+/**
+ * Hands out the accounts listed in the accounts section of a page's YAML file
+ * so that no two scenarios running in parallel log in as the same user.
+ * Turned on by setting the accountPooling property to true.
+ * <p>
+ * A lease belongs to the real account, identified by the environment and the
+ * account's username (or its name, if it has no username), not to the page
+ * that listed it. The same user listed on two pages can only be leased once,
+ * and a scenario that already holds it gets it again on the other page.
+ * <p>
+ * A scenario that asks for the default account gets whichever account listed
+ * on the page is free; a scenario that asks for an account by name waits until
+ * that account is free. Once leased, an account stays with the scenario's
+ * thread, so its username and password match, until BaseSteps releases every
+ * lease when the scenario ends. If no account becomes free within the
+ * accountLeaseTimeout property (defaults to 300 seconds), the lease fails.
+ * <p>
+ * Leases are taken with compare-and-set on a flag per account; threads only
+ * wait when every account they could use is leased. getReport lists how often
+ * each page's accounts made a scenario wait.
+ */
+public class AccountPool {
+	private static final Logger log = LogManager.getLogger(AccountPool.class);
+	private static final long POLL_MILLIS = 50;
+
+	private static final ConcurrentHashMap<String, AccountPool> pools = new ConcurrentHashMap<>();
+	// One flag per real account, keyed by environment and identity, shared by every page that lists it.
+	private static final ConcurrentHashMap<String, AtomicBoolean> leaseFlags = new ConcurrentHashMap<>();
+	// Threads waiting for an account are woken here when one is released.
+	private static final Object released = new Object();
+	// The accounts leased by the current thread, by account key.
+	private static final ThreadLocal<Map<String, AtomicBoolean>> held = new ThreadLocal<Map<String, AtomicBoolean>>() {
+		@Override
+		protected Map<String, AtomicBoolean> initialValue() {
+			return new HashMap<>();
+		}
+	};
+
+	static {
+		RunSummary.addReport(new Callable<String>() {
+			@Override
+			public String call() {
+				return getReport();
+			}
+		});
+	}
+
+	private final String name;
+	private final String[] accountNames;
+	private final List<Map<String, String>> accounts;
+	private final String[] keys;
+	private final AtomicBoolean[] flags;
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final AtomicLong leases = new AtomicLong();
+	private final AtomicLong waits = new AtomicLong();
+	private final AtomicLong waitMillis = new AtomicLong();
+	private final AtomicLong maxWaitMillis = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+
+	private AccountPool(String name, String env, Map<String, Map<String, String>> accounts) {
+		this.name = name;
+		this.accountNames = accounts.keySet().toArray(new String[accounts.size()]);
+		this.accounts = new ArrayList<>(accounts.values());
+		this.keys = new String[accountNames.length];
+		this.flags = new AtomicBoolean[accountNames.length];
+		for (int i = 0; i < accountNames.length; i++) {
+			Map<String, String> account = this.accounts.get(i);
+			String identity = account == null || account.get("username") == null ? accountNames[i] : account.get("username");
+			keys[i] = env + "/" + identity;
+			AtomicBoolean flag = new AtomicBoolean();
+			AtomicBoolean existing = leaseFlags.putIfAbsent(keys[i], flag);
+			flags[i] = existing == null ? flag : existing;
+		}
+	}
+
+	/**
+	 * Returns true if the accountPooling property is set to true.
+	 *
+	 * @return boolean true if accounts should be leased
+	 */
+	public static boolean isEnabled() {
+		try {
+			return Boolean.parseBoolean(ConfigurationManager.getProperty("accountPooling"));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Leases an account for the current thread, or returns the account it
+	 * already holds.
+	 *
+	 * @param pageName String the page whose accounts section lists the accounts
+	 * @param env String the environment
+	 * @param accounts Map&lt;String, Map&lt;String, String&gt;&gt; the accounts for the environment, by name
+	 * @param account String the account to lease, or null for any free account
+	 * @return Map&lt;String, String&gt; the account's settings, e.g. username and password
+	 * @throws AccountLeaseException if the account does not exist or does not become free in time
+	 */
+	public static Map<String, String> lease(String pageName, String env, Map<String, Map<String, String>> accounts, String account) throws AccountLeaseException {
+		String key = pageName + "/" + env;
+		AccountPool pool = pools.get(key);
+		if (pool == null) {
+			AccountPool created = new AccountPool(key, env, accounts);
+			pool = pools.putIfAbsent(key, created);
+			if (pool == null) {
+				pool = created;
+			}
+		}
+		return pool.lease(account);
+	}
+
+	/**
+	 * Releases every account leased by the current thread.
+	 */
+	public static void releaseAll() {
+		Map<String, AtomicBoolean> leasesHeld = held.get();
+		if (leasesHeld.isEmpty()) {
+			return;
+		}
+		for (AtomicBoolean flag : leasesHeld.values()) {
+			flag.set(false);
+		}
+		leasesHeld.clear();
+		synchronized (released) {
+			released.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns a summary of each page's leases and how long scenarios waited
+	 * for an account.
+	 *
+	 * @return String the summary, or an empty string if no account has been leased
+	 */
+	public static String getReport() {
+		if (pools.isEmpty()) {
+			return "";
+		}
+		StringBuilder report = new StringBuilder("Account pools (accounts, leases, waits, total wait ms, max wait ms, timeouts):");
+		for (AccountPool pool : pools.values()) {
+			report.append(StringUtils.format("\n  {} {} {} {} {} {} {}", pool.name, pool.accountNames.length, pool.leases.get(),
+					pool.waits.get(), pool.waitMillis.get(), pool.maxWaitMillis.get(), pool.timeouts.get()));
+		}
+		return report.toString();
+	}
+
+	private Map<String, String> lease(String account) throws AccountLeaseException {
+		int wanted = -1;
+		if (account != null) {
+			wanted = indexOf(account);
+			if (wanted < 0) {
+				throw new AccountLeaseException(StringUtils.format("Account {} is not defined in the accounts section for {}. See project README for details.", account, name));
+			}
+		}
+		Map<String, AtomicBoolean> mine = held.get();
+		for (int i = 0; i < keys.length; i++) {
+			if ((wanted < 0 || i == wanted) && mine.containsKey(keys[i])) {
+				return accounts.get(i);
+			}
+		}
+
+		long start = System.currentTimeMillis();
+		int index = claim(wanted);
+		if (index < 0) {
+			waits.incrementAndGet();
+			index = waitForLease(wanted, start);
+			long elapsed = System.currentTimeMillis() - start;
+			waitMillis.addAndGet(elapsed);
+			long max;
+			do {
+				max = maxWaitMillis.get();
+			} while (elapsed > max && !maxWaitMillis.compareAndSet(max, elapsed));
+			log.debug("Waited {} ms for account {} in {}", elapsed, accountNames[index], name);
+		}
+		leases.incrementAndGet();
+		mine.put(keys[index], flags[index]);
+		return accounts.get(index);
+	}
+
+	private int waitForLease(int wanted, long start) throws AccountLeaseException {
+		long deadline = start + TimeUnit.SECONDS.toMillis(getTimeout());
+		try {
+			while (true) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					timeouts.incrementAndGet();
+					throw new AccountLeaseException(StringUtils.format("No {} in {} became free within {} seconds. Add accounts, run fewer threads, or raise accountLeaseTimeout.",
+							wanted < 0 ? "account" : "lease on account " + accountNames[wanted], name, getTimeout()));
+				}
+				// The wait is bounded, so a release that happens just before it starts is still seen.
+				synchronized (released) {
+					released.wait(Math.min(remaining, POLL_MILLIS));
+				}
+				int index = claim(wanted);
+				if (index >= 0) {
+					return index;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AccountLeaseException("Interrupted while waiting for an account in " + name, e);
+		}
+	}
+
+	/**
+	 * Tries once to lease the wanted account, or any free account if none is
+	 * wanted. Starting at a rotating index spreads leases over the accounts.
+	 *
+	 * @return int the index of the leased account, or -1 if none was free
+	 */
+	private int claim(int wanted) {
+		if (wanted >= 0) {
+			return flags[wanted].compareAndSet(false, true) ? wanted : -1;
+		}
+		int size = flags.length;
+		if (size == 0) {
+			return -1;
+		}
+		int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+		for (int i = 0; i < size; i++) {
+			int index = (start + i) % size;
+			if (flags[index].compareAndSet(false, true)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	private int indexOf(String account) {
+		for (int i = 0; i < accountNames.length; i++) {
+			if (accountNames[i].equals(account)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static long getTimeout() {
+		try {
+			String timeout = ConfigurationManager.getProperty("accountLeaseTimeout");
+			return timeout == null ? 300 : Long.parseLong(timeout.trim());
+		} catch (Exception e) {
+			return 300;
+		}
+	}
+}
@@ -1,8 +1,5 @@
 package sentinel.utils;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -35,24 +32,22 @@ public abstract class ActionFunctions {
      */
     public static Action getAction(String actionName, String uid) throws NoSuchActionException {
     	API api = APIManager.getAPI(uid);
-        actionName = actionName.replaceAll("\\s+", "_").toLowerCase();
-        Method actionMethod = null;
-        try { // Create a Method object to store the Action we want to exercise;
-        	actionMethod = api.getClass().getMethod(actionName);
-        } catch (NoSuchMethodException e) {
+        actionName = MethodRegistry.normalize(actionName);
+        MethodRegistry registry = MethodRegistry.getRegistry(api.getClass(), Action.class);
+        if (!registry.contains(actionName)) {
             String errorMessage = StringUtils.format("Action {} is not defined for the API object {}. Make sure you have spelled the API name correctly in your Cucumber step definition and in the API object.", 
             		actionName, api.getName());
             log.error(errorMessage);
-            throw new NoSuchActionException(errorMessage, e);
+            throw new NoSuchActionException(errorMessage);
         }
         Action action = null;
-        try {  // Invoke the creation of the PageElement and return it into a variable if no exception is thrown.
-        	action = (Action) actionMethod.invoke(api);
-            log.trace("PageElement Name: " + actionMethod.getName());
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-        	String errorMessage = StringUtils.format("Action {} could not be found in API {}. Please ensure the Action is defined on the page.", actionMethod.getName(), api.getName());
+        try {  // Invoke the creation of the Action and return it into a variable if no exception is thrown.
+        	action = (Action) registry.invoke(api, actionName);
+            log.trace("Action Name: " + actionName);
+        } catch (Exception e) {
+        	String errorMessage = StringUtils.format("Action {} could not be created in API {}: {}", actionName, api.getName(), e.getMessage());
         	log.error(errorMessage);
-        	throw new NoSuchActionException(errorMessage);
+        	throw new NoSuchActionException(errorMessage, e);
         } 
 
         return action;
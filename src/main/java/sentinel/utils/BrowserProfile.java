@@ -0,0 +1,256 @@
+package sentinel.utils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.FirefoxProfile;
+import org.openqa.selenium.ie.InternetExplorerOptions;
+
+import sentinel.exceptions.ConfigurationMappingException;
+import sentinel.exceptions.ConfigurationParseException;
+import sentinel.exceptions.FileNotFoundException;
+import sentinel.exceptions.IOException;
+import sentinel.exceptions.MissingConfigurationException;
+
+/**
+ * A named set of browser options read from the profiles section of the
+ * sentinel.yml file. An environment selects a profile with the profile
+ * property, which can also be passed on the command line.
+ * <p>
+ * <b>Example:</b>
+ * <pre>
+ * configurations:
+ *   smoke:
+ *     browser: chrome
+ *     profile: fast
+ * profiles:
+ *   fast:
+ *     headless: true
+ *     pageLoadStrategy: eager
+ *     blockImages: true
+ *     blockFonts: true
+ *     disableExtensions: true
+ *     windowSize: 1366x768
+ *     downloadDirectory: downloads
+ * </pre>
+ * <p>
+ * Settings a browser does not support are ignored. Internet Explorer only
+ * supports pageLoadStrategy and windowSize.
+ */
+public class BrowserProfile {
+	private static final Logger log = LogManager.getLogger(BrowserProfile.class);
+
+	private final String name;
+	private final Map<String, String> settings;
+
+	/**
+	 * Creates a profile from its settings.
+	 *
+	 * @param name String the name of the profile, used in log messages
+	 * @param settings Map&lt;String, String&gt; the profile settings, may be null for an empty profile
+	 */
+	public BrowserProfile(String name, Map<String, String> settings) {
+		this.name = name;
+		this.settings = settings == null ? Collections.<String, String>emptyMap() : settings;
+	}
+
+	/**
+	 * Returns the profile named by the profile property, or an empty profile if
+	 * the property is not set.
+	 *
+	 * @return BrowserProfile the selected profile
+	 * @throws MissingConfigurationException if the profile property names a profile that is not defined
+	 * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+	 * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+	 * @throws IOException if other error occurs when mapping yml file into sentinel
+	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
+	 */
+	public static BrowserProfile load() throws MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, IOException, FileNotFoundException {
+		String profileName = ConfigurationManager.getProperty("profile");
+		if (profileName == null) {
+			return new BrowserProfile("default", null);
+		}
+		Map<String, String> settings = ConfigurationManager.getBrowserProfile(profileName);
+		if (settings == null) {
+			throw new MissingConfigurationException(StringUtils.format("Browser profile '{}' is not defined in the profiles section of conf/sentinel.yml. See project README for details.", profileName));
+		}
+		log.debug("Using browser profile {}: {}", profileName, settings);
+		return new BrowserProfile(profileName, settings);
+	}
+
+	/**
+	 * Returns the name of the profile.
+	 *
+	 * @return String the profile name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns true if the browser should run without a window.
+	 *
+	 * @return boolean true if headless is set to true
+	 */
+	public boolean isHeadless() {
+		return getBoolean("headless");
+	}
+
+	/**
+	 * Returns the page load strategy. Eager returns control once the DOM is
+	 * ready without waiting for images and stylesheets; none returns as soon as
+	 * navigation starts.
+	 *
+	 * @return PageLoadStrategy the strategy, or null if not set
+	 */
+	public PageLoadStrategy getPageLoadStrategy() {
+		String value = settings.get("pageLoadStrategy");
+		if (value == null) {
+			return null;
+		}
+		PageLoadStrategy strategy = PageLoadStrategy.fromString(value.trim().toLowerCase());
+		if (strategy == null) {
+			log.warn("Ignoring unknown pageLoadStrategy '{}' in browser profile {}. Valid options: normal, eager, none", value, name);
+		}
+		return strategy;
+	}
+
+	/**
+	 * Returns the window size set with windowSize, in the form 1366x768.
+	 *
+	 * @return Dimension the window size, or null if not set
+	 */
+	public Dimension getWindowSize() {
+		String value = settings.get("windowSize");
+		if (value == null) {
+			return null;
+		}
+		String[] parts = value.toLowerCase().split("[x,]");
+		try {
+			return new Dimension(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			log.warn("Ignoring windowSize '{}' in browser profile {}. Use the form 1366x768.", value, name);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the download directory, falling back to the given default.
+	 *
+	 * @param defaultDirectory String the directory to use if the profile does not set one
+	 * @return String the download directory
+	 */
+	public String getDownloadDirectory(String defaultDirectory) {
+		String value = settings.get("downloadDirectory");
+		return value == null ? defaultDirectory : value;
+	}
+
+	/**
+	 * Builds Chrome options for this profile.
+	 *
+	 * @param downloadDirectory String the directory to use if the profile does not set one
+	 * @return ChromeOptions the options to pass to the ChromeDriver
+	 */
+	public ChromeOptions toChromeOptions(String downloadDirectory) {
+		ChromeOptions options = new ChromeOptions();
+		HashMap<String, Object> chromePrefs = new HashMap<String, Object>();
+		chromePrefs.put("download.default_directory", new File(getDownloadDirectory(downloadDirectory)).getAbsolutePath());
+		chromePrefs.put("download.prompt_for_download", false);
+		if (getBoolean("blockImages")) {
+			chromePrefs.put("profile.managed_default_content_settings.images", 2);
+		}
+		options.setExperimentalOption("prefs", chromePrefs);
+		if (getBoolean("blockFonts")) {
+			options.addArguments("--disable-remote-fonts");
+		}
+		if (getBoolean("disableExtensions")) {
+			options.addArguments("--disable-extensions");
+		}
+		if (isHeadless()) {
+			options.setHeadless(true);
+			Dimension size = getWindowSize();
+			// Headless windows default to 800x600, which triggers mobile layouts on many sites.
+			options.addArguments(size == null ? "--window-size=1920,1080" : "--window-size=" + size.getWidth() + "," + size.getHeight());
+		}
+		PageLoadStrategy strategy = getPageLoadStrategy();
+		if (strategy != null) {
+			options.setPageLoadStrategy(strategy);
+		}
+		return options;
+	}
+
+	/**
+	 * Builds Firefox options for this profile.
+	 *
+	 * @param downloadDirectory String the directory to use if the profile does not set one
+	 * @return FirefoxOptions the options to pass to the FirefoxDriver
+	 */
+	public FirefoxOptions toFirefoxOptions(String downloadDirectory) {
+		FirefoxOptions options = new FirefoxOptions();
+		FirefoxProfile profile = new FirefoxProfile();
+		profile.setPreference("browser.download.folderList", 2);
+		profile.setPreference("browser.download.useDownloadDir", true);
+		profile.setPreference("browser.download.dir", new File(getDownloadDirectory(downloadDirectory)).getAbsolutePath());
+		if (getBoolean("blockImages")) {
+			profile.setPreference("permissions.default.image", 2);
+		}
+		if (getBoolean("blockFonts")) {
+			profile.setPreference("gfx.downloadable_fonts.enabled", false);
+		}
+		if (getBoolean("disableExtensions")) {
+			profile.setPreference("extensions.enabledScopes", 0);
+		}
+		options.setProfile(profile);
+		if (isHeadless()) {
+			options.setHeadless(true);
+			Dimension size = getWindowSize();
+			if (size != null) {
+				options.addArguments("--width=" + size.getWidth(), "--height=" + size.getHeight());
+			}
+		}
+		PageLoadStrategy strategy = getPageLoadStrategy();
+		if (strategy != null) {
+			options.setPageLoadStrategy(strategy);
+		}
+		return options;
+	}
+
+	/**
+	 * Applies this profile to Internet Explorer options.
+	 *
+	 * @param options InternetExplorerOptions the options to change
+	 * @return InternetExplorerOptions the same options, for chaining
+	 */
+	public InternetExplorerOptions applyTo(InternetExplorerOptions options) {
+		PageLoadStrategy strategy = getPageLoadStrategy();
+		if (strategy != null) {
+			options.setPageLoadStrategy(strategy);
+		}
+		return options;
+	}
+
+	/**
+	 * Applies the settings that can only be made once the browser is running.
+	 *
+	 * @param driver WebDriver the newly created driver
+	 */
+	public void applyTo(WebDriver driver) {
+		Dimension size = getWindowSize();
+		if (size != null && !isHeadless()) {
+			driver.manage().window().setSize(size);
+		}
+	}
+
+	private boolean getBoolean(String key) {
+		return Boolean.parseBoolean(settings.get(key));
+	}
+}
@@ -0,0 +1,194 @@
+package sentinel.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Times every WebDriver command by wrapping the driver in a recording proxy.
+ * Turned on by setting the commandTracing property to true, in which case the
+ * WebDriverFactory wraps each driver it creates.
+ * <p>
+ * Each command is recorded in a histogram under its name (e.g. findElement,
+ * WebElement.click, navigate.to). Commands on elements are also recorded
+ * under the locator that found the element, and all commands are totalled by
+ * the scenario that was running, which BaseSteps sets before each scenario.
+ * getReport lists the commands and locators that took the most total time
+ * and the commands with the slowest 99th percentile.
+ * <p>
+ * <b>NOTE:</b> Cucumber 1.2.5 has no hook that runs around each step, so
+ * commands are tagged with the scenario but not the step.
+ */
+public class CommandTracer {
+	// Durations are recorded in microseconds. Histograms resize themselves, so no upper bound is needed.
+	private static final int SIGNIFICANT_DIGITS = 3;
+	private static final ConcurrentHashMap<String, Histogram> commands = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, Histogram> locators = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, Histogram> scenarios = new ConcurrentHashMap<>();
+	private static final ThreadLocal<String> scenario = new ThreadLocal<>();
+
+	private CommandTracer() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * Returns true if the commandTracing property is set to true.
+	 *
+	 * @return boolean true if commands should be traced
+	 */
+	public static boolean isEnabled() {
+		try {
+			return Boolean.parseBoolean(ConfigurationManager.getProperty("commandTracing"));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Wraps a driver so that every command made through it, and through the
+	 * elements, windows and navigation objects it returns, is timed.
+	 *
+	 * @param driver WebDriver the driver to trace
+	 * @return WebDriver a proxy implementing every interface the driver implements
+	 */
+	public static WebDriver wrap(WebDriver driver) {
+		return DriverDecorator.wrap(driver, RECORDER);
+	}
+
+	/**
+	 * Labels an element found by a script with the locator it was looked up
+	 * with, so its commands are recorded under that locator instead of "by
+	 * script". Does nothing if the element did not come from a traced driver.
+	 *
+	 * @param element WebElement the element returned by the script
+	 * @param locator String the locator, e.g. By.id: submit
+	 * @return WebElement the labelled element, to be used in place of the one passed in
+	 */
+	public static WebElement label(WebElement element, String locator) {
+		return DriverDecorator.relabel(element, locator);
+	}
+
+	private static final DriverDecorator.Listener RECORDER = new DriverDecorator.Listener() {
+		@Override
+		public void before(String command, String locator) {
+			// Nothing to do until the command finishes.
+		}
+
+		@Override
+		public void after(String command, String locator, long nanos) {
+			record(command, locator, nanos);
+		}
+	};
+
+	/**
+	 * Sets the scenario that commands made on the current thread are totalled under.
+	 *
+	 * @param name String the scenario name, or null to stop tagging commands
+	 */
+	public static void setScenario(String name) {
+		if (name == null) {
+			scenario.remove();
+		} else {
+			scenario.set(name);
+		}
+	}
+
+	/**
+	 * Discards everything recorded so far.
+	 */
+	public static void reset() {
+		commands.clear();
+		locators.clear();
+		scenarios.clear();
+	}
+
+	/**
+	 * Returns a report of the commands with the most total time, the commands
+	 * with the slowest 99th percentile, and the locators and scenarios with the
+	 * most total time.
+	 *
+	 * @param limit int the number of rows to show in each section
+	 * @return String the report, or an empty string if nothing was recorded
+	 */
+	public static String getReport(int limit) {
+		if (commands.isEmpty()) {
+			return "";
+		}
+		StringBuilder report = new StringBuilder("WebDriver command trace");
+		appendSection(report, "Top commands by total time", commands, limit, BY_TOTAL);
+		appendSection(report, "Top commands by p99", commands, limit, BY_P99);
+		appendSection(report, "Top locators by total time", locators, limit, BY_TOTAL);
+		appendSection(report, "Top scenarios by total time", scenarios, limit, BY_TOTAL);
+		return report.toString();
+	}
+
+	private static final Comparator<Map.Entry<String, Histogram>> BY_TOTAL = new Comparator<Map.Entry<String, Histogram>>() {
+		@Override
+		public int compare(Map.Entry<String, Histogram> a, Map.Entry<String, Histogram> b) {
+			return Double.compare(total(b.getValue()), total(a.getValue()));
+		}
+	};
+
+	private static final Comparator<Map.Entry<String, Histogram>> BY_P99 = new Comparator<Map.Entry<String, Histogram>>() {
+		@Override
+		public int compare(Map.Entry<String, Histogram> a, Map.Entry<String, Histogram> b) {
+			return Long.compare(b.getValue().getValueAtPercentile(99), a.getValue().getValueAtPercentile(99));
+		}
+	};
+
+	private static double total(Histogram histogram) {
+		return histogram.getMean() * histogram.getTotalCount();
+	}
+
+	private static void appendSection(StringBuilder report, String title, Map<String, Histogram> histograms, int limit, Comparator<Map.Entry<String, Histogram>> order) {
+		if (histograms.isEmpty()) {
+			return;
+		}
+		List<Map.Entry<String, Histogram>> entries = new ArrayList<>();
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			// Snapshot each histogram so the figures in a row agree with each other.
+			entries.add(new java.util.AbstractMap.SimpleImmutableEntry<String, Histogram>(entry.getKey(), entry.getValue().copy()));
+		}
+		Collections.sort(entries, order);
+		report.append("\n").append(title).append(" (count, total ms, mean ms, p50 ms, p99 ms, max ms):");
+		for (Map.Entry<String, Histogram> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+			Histogram histogram = entry.getValue();
+			report.append(String.format("%n  %-60s %8d %10.1f %8.2f %8.2f %8.2f %8.2f", entry.getKey(), histogram.getTotalCount(),
+					total(histogram) / 1000, histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(99) / 1000.0, histogram.getMaxValue() / 1000.0));
+		}
+	}
+
+	private static void record(String command, String locator, long nanos) {
+		long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+		histogram(commands, command).recordValue(micros);
+		if (locator != null) {
+			histogram(locators, locator + " " + command).recordValue(micros);
+		}
+		String current = scenario.get();
+		if (current != null) {
+			histogram(scenarios, current).recordValue(micros);
+		}
+	}
+
+	private static Histogram histogram(ConcurrentHashMap<String, Histogram> histograms, String key) {
+		Histogram histogram = histograms.get(key);
+		if (histogram == null) {
+			Histogram created = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+			histogram = histograms.putIfAbsent(key, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+}
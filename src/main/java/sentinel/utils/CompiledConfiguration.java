@@ -0,0 +1,305 @@
+package sentinel.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import sentinel.pages.PageData;
+
+/**
+ * Reads the configuration snapshot written by the ConfigurationCompiler, so
+ * that conf/sentinel.yml and the page configuration files can be loaded from
+ * one binary classpath resource instead of being parsed as YAML on every run.
+ * <p>
+ * Each file in the snapshot records the absolute path, size and modification
+ * time of the YAML it was compiled from. If that file has changed since, the
+ * snapshot entry is ignored and the YAML is parsed as usual. A missing file is
+ * treated as changed while the project's conf/ or src/ directory is there,
+ * either where it was compiled or in the working directory, since the file
+ * was then deleted or renamed. Only when neither is there, e.g. when the
+ * tests run from a jar, is the snapshot trusted without its files. If there
+ * is no snapshot on the classpath, nothing changes.
+ *
+ * @see sentinel.utils.ConfigurationCompiler
+ */
+public final class CompiledConfiguration {
+	private static final Logger log = LogManager.getLogger(CompiledConfiguration.class);
+
+	/**
+	 * The name of the snapshot resource at the root of the classpath.
+	 */
+	public static final String RESOURCE = "sentinel-config.bin";
+
+	static final int MAGIC = 0x534E544C; // SNTL
+	static final int VERSION = 2;
+	static final byte CONFIGURATION = 0;
+	static final byte PAGE = 1;
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte MAP = 2;
+
+	private static final CompiledConfiguration EMPTY = new CompiledConfiguration(null, new HashMap<String, Entry>(), false);
+	private static volatile CompiledConfiguration instance = null;
+
+	private final Entry configuration;
+	private final Map<String, Entry> pages;
+	// True if the YAML files could be read, so a missing one has been deleted or renamed.
+	private final boolean sourcesPresent;
+
+	private CompiledConfiguration(Entry configuration, Map<String, Entry> pages, boolean sourcesPresent) {
+		this.configuration = configuration;
+		this.pages = pages;
+		this.sourcesPresent = sourcesPresent;
+	}
+
+	/**
+	 * One compiled file: where it came from and its top level values in the
+	 * order they were written.
+	 */
+	private static class Entry {
+		private final File source;
+		private final long lastModified;
+		private final long length;
+		private final Object[] values;
+
+		private Entry(String source, long lastModified, long length, Object[] values) {
+			this.source = new File(source);
+			this.lastModified = lastModified;
+			this.length = length;
+			this.values = values;
+		}
+
+		private boolean isStale(boolean sourcesPresent) {
+			if (!source.exists()) {
+				return sourcesPresent;
+			}
+			return source.lastModified() != lastModified || source.length() != length;
+		}
+	}
+
+	/**
+	 * Returns the contents of conf/sentinel.yml from the snapshot.
+	 *
+	 * @return ConfigurationData the configuration, or null if there is no snapshot, it does not contain the file, or the file has changed since it was compiled
+	 */
+	@SuppressWarnings("unchecked")
+	public static ConfigurationData getConfigurationData() {
+		Entry entry = current(getInstance().configuration);
+		if (entry == null) {
+			return null;
+		}
+		try {
+			ConfigurationData data = new ConfigurationData();
+			data.configurations = (Map<String, Map<String, String>>) entry.values[0];
+			data.profiles = (Map<String, Map<String, String>>) entry.values[1];
+			return data;
+		} catch (java.io.FileNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the data for a page from the snapshot.
+	 *
+	 * @param pageName String the name of the page object
+	 * @return PageData the page data, or null if there is no snapshot, it does not contain the page, or the page's file has changed since it was compiled
+	 */
+	@SuppressWarnings("unchecked")
+	public static PageData getPageData(String pageName) {
+		Entry entry = current(getInstance().pages.get(pageName));
+		if (entry == null) {
+			return null;
+		}
+		PageData pageData = new PageData();
+		pageData.urls = (Map<String, String>) entry.values[0];
+		pageData.account = (Map<String, Map<String, String>>) entry.values[1];
+		pageData.accounts = (Map<String, Map<String, Map<String, String>>>) entry.values[2];
+		pageData.data = (Map<String, Map<String, String>>) entry.values[3];
+		pageData.testdata = (Map<String, Map<String, Map<String, String>>>) entry.values[4];
+		return pageData;
+	}
+
+	/**
+	 * Returns the YAML file a page was compiled from, which may not exist.
+	 *
+	 * @param pageName String the name of the page object
+	 * @return File the source file, or null if the page is not in the snapshot
+	 */
+	public static File getPageSourceFile(String pageName) {
+		Entry entry = getInstance().pages.get(pageName);
+		return entry == null ? null : entry.source;
+	}
+
+	private static Entry current(Entry entry) {
+		if (entry != null && entry.isStale(getInstance().sourcesPresent)) {
+			log.debug("{} has changed since the configuration snapshot was compiled, reading the YAML instead.", entry.source);
+			return null;
+		}
+		return entry;
+	}
+
+	private static CompiledConfiguration getInstance() {
+		CompiledConfiguration compiled = instance;
+		if (compiled == null) {
+			synchronized (CompiledConfiguration.class) {
+				compiled = instance;
+				if (compiled == null) {
+					compiled = load();
+					instance = compiled;
+				}
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * Throws away the loaded snapshot so that it is read again on next use.
+	 */
+	public static synchronized void clear() {
+		instance = null;
+	}
+
+	private static CompiledConfiguration load() {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		if (classLoader == null) {
+			classLoader = CompiledConfiguration.class.getClassLoader();
+		}
+		URL resource = classLoader.getResource(RESOURCE);
+		if (resource == null) {
+			return EMPTY;
+		}
+		long start = System.nanoTime();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(resource.openStream()))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				log.warn("{} was written by a different version of Sentinel and will be ignored. Run the ConfigurationCompiler again.", resource);
+				return EMPTY;
+			}
+			File projectDirectory = new File(readString(in));
+			boolean sourcesPresent = hasSources(projectDirectory) || hasSources(new File("."));
+			Entry configuration = null;
+			Map<String, Entry> pages = new HashMap<>();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				byte type = in.readByte();
+				String name = readString(in);
+				String source = readString(in);
+				long lastModified = in.readLong();
+				long length = in.readLong();
+				Object[] values = new Object[in.readInt()];
+				for (int j = 0; j < values.length; j++) {
+					values[j] = readValue(in);
+				}
+				Entry entry = new Entry(source, lastModified, length, values);
+				if (type == CONFIGURATION) {
+					configuration = entry;
+				} else {
+					pages.put(name, entry);
+				}
+			}
+			log.debug("Loaded {} compiled configuration files from {} in {} ms", count, resource, (System.nanoTime() - start) / 1000000);
+			return new CompiledConfiguration(configuration, pages, sourcesPresent);
+		} catch (java.io.IOException | RuntimeException e) {
+			log.warn("{} could not be read and will be ignored: {}", resource, e.getMessage());
+			return EMPTY;
+		}
+	}
+
+	private static boolean hasSources(File projectDirectory) {
+		return new File(projectDirectory, "conf").isDirectory() || new File(projectDirectory, "src").isDirectory();
+	}
+
+	/**
+	 * Writes the start of a snapshot.
+	 *
+	 * @param out DataOutputStream the snapshot being written
+	 * @param projectDirectory File the directory containing conf/ and src/
+	 * @throws java.io.IOException if the snapshot cannot be written
+	 */
+	static void writeHeader(DataOutputStream out, File projectDirectory) throws java.io.IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		writeString(out, projectDirectory.getAbsolutePath());
+	}
+
+	/**
+	 * Writes one compiled file to the snapshot.
+	 *
+	 * @param out DataOutputStream the snapshot being written
+	 * @param type byte CONFIGURATION or PAGE
+	 * @param name String the page name, or the file name for the configuration
+	 * @param source String the absolute path of the YAML file
+	 * @param file File the YAML file, for its size and modification time
+	 * @param values Object... the top level values of the file, each a String, a Map or null
+	 * @throws java.io.IOException if the snapshot cannot be written
+	 */
+	static void writeEntry(DataOutputStream out, byte type, String name, String source, File file, Object... values) throws java.io.IOException {
+		out.writeByte(type);
+		writeString(out, name);
+		writeString(out, source);
+		out.writeLong(file.lastModified());
+		out.writeLong(file.length());
+		out.writeInt(values.length);
+		for (Object value : values) {
+			writeValue(out, value);
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws java.io.IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			out.writeByte(MAP);
+			out.writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeString(out, String.valueOf(entry.getKey()));
+				writeValue(out, entry.getValue());
+			}
+		} else {
+			out.writeByte(STRING);
+			writeString(out, value.toString());
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws java.io.IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(in);
+		case MAP:
+			int size = in.readInt();
+			Map<String, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+			for (int i = 0; i < size; i++) {
+				String key = readString(in);
+				map.put(key, readValue(in));
+			}
+			return map;
+		default:
+			throw new java.io.IOException("Unknown value tag " + tag);
+		}
+	}
+
+	// writeUTF is limited to 64KB, which a large block of test data can exceed.
+	private static void writeString(DataOutputStream out, String value) throws java.io.IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws java.io.IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,167 @@
+package sentinel.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import sentinel.exceptions.SentinelException;
+import sentinel.pages.PageData;
+
+/**
+ * Compiles conf/sentinel.yml and every page configuration file under src/
+ * into the binary snapshot read by CompiledConfiguration, so that test runs
+ * can skip YAML parsing. Run it as part of the build, after the classes are
+ * compiled, so the snapshot is on the test classpath.
+ * <p>
+ * <b>Example:</b>
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *   &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *   &lt;version&gt;1.6.0&lt;/version&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;phase&gt;process-test-classes&lt;/phase&gt;
+ *       &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *       &lt;configuration&gt;
+ *         &lt;mainClass&gt;sentinel.utils.ConfigurationCompiler&lt;/mainClass&gt;
+ *         &lt;classpathScope&gt;test&lt;/classpathScope&gt;
+ *         &lt;arguments&gt;
+ *           &lt;argument&gt;${project.build.testOutputDirectory}/sentinel-config.bin&lt;/argument&gt;
+ *           &lt;argument&gt;${project.basedir}&lt;/argument&gt;
+ *         &lt;/arguments&gt;
+ *       &lt;/configuration&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * Files that cannot be parsed are left out of the snapshot with a warning,
+ * so that the error is reported by the YAML parser when the tests run.
+ */
+public final class ConfigurationCompiler {
+	private static final Logger log = LogManager.getLogger(ConfigurationCompiler.class);
+	private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory())
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private ConfigurationCompiler() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * The parts of conf/sentinel.yml that are compiled. ConfigurationData
+	 * itself cannot be used because it is a File, which Jackson cannot create
+	 * on newer JVMs without extra permissions.
+	 */
+	static class ConfigurationSource {
+		public Map<String, Map<String, String>> configurations;
+		public Map<String, Map<String, String>> profiles;
+	}
+
+	/**
+	 * Writes the snapshot.
+	 *
+	 * @param args String[] the snapshot file to write, defaulting to target/classes/sentinel-config.bin, and the project directory, defaulting to the current directory
+	 * @throws java.io.IOException if the snapshot cannot be written
+	 */
+	public static void main(String[] args) throws java.io.IOException {
+		File output = new File(args.length > 0 ? args[0] : "target/classes/" + CompiledConfiguration.RESOURCE);
+		File projectDirectory = new File(args.length > 1 ? args[1] : ".");
+		int count = compile(projectDirectory, output);
+		log.info("Compiled {} configuration files into {}", count, output);
+	}
+
+	/**
+	 * Compiles the configuration files in a project into a snapshot file.
+	 *
+	 * @param projectDirectory File the directory containing conf/ and src/, which is where the tests will run
+	 * @param output File the snapshot file to write
+	 * @return int the number of files compiled
+	 * @throws java.io.IOException if the snapshot cannot be written
+	 */
+	public static int compile(File projectDirectory, File output) throws java.io.IOException {
+		File base = projectDirectory.getAbsoluteFile();
+		Map<String, File> pages = new LinkedHashMap<>();
+		File sourceDirectory = new File(base, "src");
+		if (sourceDirectory.isDirectory()) {
+			findPages(sourceDirectory, pages);
+		}
+
+		File parent = output.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new java.io.IOException("Could not create the directory " + parent);
+		}
+		File temporary = new File(output.getPath() + ".tmp");
+		int count = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+			CompiledConfiguration.writeHeader(out, base);
+			// The entries are buffered because their count comes first.
+			ByteArrayOutputStream entries = new ByteArrayOutputStream();
+			DataOutputStream entryOut = new DataOutputStream(entries);
+
+			File configurationFile = new File(base, "conf/sentinel.yml");
+			if (configurationFile.isFile()) {
+				try {
+					ConfigurationSource configuration = mapper.readValue(configurationFile, ConfigurationSource.class);
+					CompiledConfiguration.writeEntry(entryOut, CompiledConfiguration.CONFIGURATION, "sentinel.yml",
+							configurationFile.getAbsolutePath(), configurationFile, configuration.configurations, configuration.profiles);
+					count++;
+				} catch (java.io.IOException e) {
+					log.warn("Skipping {}, which could not be parsed: {}", configurationFile, e.getMessage());
+				}
+			}
+			for (Map.Entry<String, File> page : pages.entrySet()) {
+				File file = page.getValue();
+				try {
+					PageData pageData = PageData.loadYaml(file);
+					if (pageData == null) {
+						continue;
+					}
+					CompiledConfiguration.writeEntry(entryOut, CompiledConfiguration.PAGE, page.getKey(), file.getAbsolutePath(), file,
+							pageData.urls, pageData.account, pageData.accounts, pageData.data, pageData.testdata);
+					count++;
+				} catch (SentinelException | java.io.IOException e) {
+					log.warn("Skipping {}, which could not be parsed: {}", file, e.getMessage());
+				}
+			}
+			entryOut.flush();
+			out.writeInt(count);
+			entries.writeTo(out);
+		}
+		Files.move(temporary.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return count;
+	}
+
+	/**
+	 * Finds .yml files the same way PageDataCache does: the first file with a
+	 * given name wins.
+	 */
+	private static void findPages(File directory, Map<String, File> pages) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				findPages(file, pages);
+			} else if (file.getName().endsWith(".yml")) {
+				String pageName = file.getName().substring(0, file.getName().length() - ".yml".length());
+				if (!pages.containsKey(pageName)) {
+					pages.put(pageName, file);
+				}
+			}
+		}
+	}
+}
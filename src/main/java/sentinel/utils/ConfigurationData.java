@@ -19,6 +19,9 @@ public class ConfigurationData extends File {
 	
 	@JsonProperty("configurations")
 	public Map<String, Map<String, String>> configurations;
+
+	@JsonProperty("profiles")
+	public Map<String, Map<String, String>> profiles;
 	
 	@JsonCreator
     public ConfigurationData() throws FileNotFoundException {
@@ -37,5 +40,18 @@ public class ConfigurationData extends File {
 			environment = "default";
 		}
 		return configurations.get(environment).get(configurationKey);
-	}	
+	}
+
+	/**
+	 * Returns the browser profile with the given name
+	 * 
+	 * @param profileName String the name of the profile
+	 * @return Map&lt;String, String&gt; the profile settings, or null if no profile has that name
+	 */
+	public Map<String, String> getProfile(String profileName) {
+		if (profiles == null) {
+			return null;
+		}
+		return profiles.get(profileName);
+	}
 }
\ No newline at end of file
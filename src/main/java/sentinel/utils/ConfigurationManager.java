@@ -1,7 +1,8 @@
 package sentinel.utils;
 
 import java.io.File;
-import java.util.Properties;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
@@ -14,6 +15,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
 import sentinel.exceptions.AccessDeniedException;
+import sentinel.exceptions.AccountLeaseException;
 import sentinel.exceptions.ConfigurationMappingException;
 import sentinel.exceptions.ConfigurationParseException;
 import sentinel.exceptions.FileNotFoundException;
@@ -22,6 +24,7 @@ import sentinel.exceptions.MissingConfigurationException;
 import sentinel.exceptions.PageNotFoundException;
 import sentinel.exceptions.URLNotFoundException;
 import sentinel.pages.PageData;
+import sentinel.pages.PageDataCache;
 import sentinel.pages.PageManager;
 import sentinel.utils.ConfigurationData;
 
@@ -37,24 +40,15 @@ public class ConfigurationManager {
 
 	private static ConfigurationManager instance = null;
 	
-	private static Properties appProps = new Properties();
-	
 	private static String downloadDirectory = "../../Downloads";
-	/* default timeout in seconds */
-	private static long timeout = 10L;
 	
-	private static ConfigurationData sentinelConfigurations = null;
+	private static volatile ConfigurationData sentinelConfigurations = null;
 	
 	/**
-	 * Name of the package where page objects are stored. If you change the name,
-	 * you need to change this value. To search in additional locations, you can set
-	 * a system property.
-	 *
-	 * <b>Example:</b>
-	 * <p>
-	 * <code>System.setProperty("pageObjectPackages", "pages.SharedComponent,pages.UserAdminTool");</code>
+	 * The resolved configuration. Built the first time a property is read and
+	 * replaced only by reloadConfiguration, so readers never need a lock.
 	 */
-	private static String defaultPackageName = "pages,apis";
+	private static volatile ConfigurationSnapshot configuration = null;
 
 	protected ConfigurationManager() {
 		// Exists only to defeat instantiation.
@@ -100,22 +94,116 @@ public class ConfigurationManager {
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
 	 */
 	public static String getOrCreateConfigurationData(String configurationKey) throws ConfigurationParseException, ConfigurationMappingException, MissingConfigurationException, FileNotFoundException, IOException {	
-		//First we see if the property is set on the maven commandline or in code.
-		String data = System.getProperty(configurationKey);
-		if (data != null) {
+		ConfigurationSnapshot snapshot = getConfiguration();
+		String data = snapshot.get(configurationKey);
+		if (data != null || snapshot.isComplete()) {
 			return data;
 		}
-		
+		// The value might be in a YAML file we could not read or an environment that is not set, so report why.
+		loadConfigurationData(configurationKey);
+		return sentinelConfigurations.getConfigurationValue(getEnvironment(), configurationKey);	
+	}
+
+	/**
+	 * Returns the configuration snapshot, building it from system properties,
+	 * SENTINEL_ environment variables and the sentinel.yml file the first time
+	 * it is needed. System properties set after the snapshot is built are not
+	 * seen until reloadConfiguration is called.
+	 * 
+	 * @see sentinel.utils.ConfigurationSnapshot
+	 * @return ConfigurationSnapshot the current configuration
+	 */
+	public static ConfigurationSnapshot getConfiguration() {
+		ConfigurationSnapshot snapshot = configuration;
+		if (snapshot == null) {
+			synchronized (ConfigurationManager.class) {
+				snapshot = configuration;
+				if (snapshot == null) {
+					snapshot = buildConfiguration();
+					configuration = snapshot;
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Reads system properties, environment variables and the sentinel.yml file
+	 * again and replaces the configuration snapshot. Threads already holding the
+	 * old snapshot keep using it until they next ask for the configuration.
+	 * 
+	 * @return ConfigurationSnapshot the new configuration
+	 */
+	public static synchronized ConfigurationSnapshot reloadConfiguration() {
+		sentinelConfigurations = null;
+		CompiledConfiguration.clear();
+		configuration = buildConfiguration();
+		return configuration;
+	}
+
+	private static ConfigurationSnapshot buildConfiguration() {
+		Map<String, String> systemProperties = new HashMap<>();
+		for (String name : System.getProperties().stringPropertyNames()) {
+			systemProperties.put(name, System.getProperty(name));
+		}
+		ConfigurationData yaml = null;
+		try {
+			// A missing file is only an error if a property that is not set elsewhere is read, so do not log it here.
+			if (new ConfigurationData().exists() || CompiledConfiguration.getConfigurationData() != null) {
+				loadConfigurationData("configuration");
+				yaml = sentinelConfigurations;
+			}
+		} catch (java.io.FileNotFoundException | ConfigurationParseException | ConfigurationMappingException | FileNotFoundException | IOException e) {
+			yaml = null;
+		}
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(systemProperties, System.getenv(), yaml);
+		if (yaml != null && snapshot.getEnvironment() != null && (yaml.configurations == null || !yaml.configurations.containsKey(snapshot.getEnvironment()))) {
+			log.warn("Environment {} is not defined in conf/sentinel.yml, so only system properties and environment variables will be used.", snapshot.getEnvironment());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the settings of the named browser profile from the profiles section
+	 * of the sentinel.yml file.
+	 * 
+	 * @param profileName String the name of the profile
+	 * @return Map&lt;String, String&gt; the profile settings, or null if no profile has that name
+	 * @throws ConfigurationParseException if an exception occurs when parsing configuration to data object
+	 * @throws ConfigurationMappingException if an exception is thrown when mapping yml configurations to data object
+	 * @throws IOException if an exception is thrown while mapping ConfigurationData class to new ConfigurationData object
+	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
+	 */
+	public static Map<String, String> getBrowserProfile(String profileName) throws ConfigurationParseException, ConfigurationMappingException, FileNotFoundException, IOException {
+		Map<String, String> profile = getConfiguration().getProfile(profileName);
+		if (profile == null) {
+			// Reports the reason if the file could not be read.
+			loadConfigurationData("profile");
+		}
+		return profile;
+	}
+
+	/**
+	 * Reads the sentinel.yml file into the ConfigurationData object the first time it is needed,
+	 * from the compiled configuration snapshot if there is a current one.
+	 * 
+	 * @see sentinel.utils.CompiledConfiguration
+	 * @param configurationKey String the property being requested, used in error messages
+	 */
+	private static synchronized void loadConfigurationData(String configurationKey) throws ConfigurationParseException, ConfigurationMappingException, FileNotFoundException, IOException {
+		if(sentinelConfigurations == null) {
+			sentinelConfigurations = CompiledConfiguration.getConfigurationData();
+		}
 		if(sentinelConfigurations == null) {
 			try {
 				ObjectMapper mapper = new ObjectMapper(new YAMLFactory()).configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 				sentinelConfigurations = mapper.readValue( new ConfigurationData(), ConfigurationData.class );
 			} catch (JsonParseException e) {
-				String errorMessage = StringUtils.format("Configuration file {} is not a valid YAML file. Could not load the {} property. Please fix the file or pass the property in on the commandline using the -D option.", sentinelConfigurations.getAbsolutePath(), configurationKey);
+				String errorMessage = StringUtils.format("Configuration file {} is not a valid YAML file. Could not load the {} property. Please fix the file or pass the property in on the commandline using the -D option.", "conf/sentinel.yml", configurationKey);
 				log.error(errorMessage);
 				throw new ConfigurationParseException(errorMessage, e);
 			} catch (JsonMappingException e) {
-				String errorMessage = StringUtils.format("Configuration file {} has incorrect formatting and cannot be read. Could not load the {} property. Please fix the file or pass the property in on the commandline using the -D option.", sentinelConfigurations.getAbsolutePath(), configurationKey);
+				String errorMessage = StringUtils.format("Configuration file {} has incorrect formatting and cannot be read. Could not load the {} property. Please fix the file or pass the property in on the commandline using the -D option.", "conf/sentinel.yml", configurationKey);
 				log.error(errorMessage);
 				throw new ConfigurationMappingException(errorMessage, e);
 			} catch (java.io.FileNotFoundException e) {
@@ -128,8 +216,6 @@ public class ConfigurationManager {
 				throw new IOException(errorMessage, e);
 			}
 		}
-	 
-		return sentinelConfigurations.getConfigurationValue(getEnvironment(), configurationKey);	
 	}
 	
 	/**
@@ -146,11 +232,7 @@ public class ConfigurationManager {
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
 	 */
 	public static String getProperty(String property) throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
-		String systemProperty = System.getProperty(property);
-		if(systemProperty == null) {
-			systemProperty = getOrCreateConfigurationData(property);
-		}		
-		return systemProperty;
+		return getOrCreateConfigurationData(property);
 	}
 	
 	/**
@@ -164,11 +246,11 @@ public class ConfigurationManager {
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
 	 */
 	public static String[] getPageObjectPackageList() throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
-		String pageObjectPackages = getOrCreateConfigurationData("pageObjectPackages");
-		pageObjectPackages = (pageObjectPackages == null) ? defaultPackageName
-				: pageObjectPackages + "," + defaultPackageName;
-		log.trace("pageObjectPackages: {}", pageObjectPackages);
-		return StringUtils.split(pageObjectPackages, ',');
+		ConfigurationSnapshot snapshot = getConfiguration();
+		if (!snapshot.isComplete()) {
+			getOrCreateConfigurationData("pageObjectPackages");
+		}
+		return snapshot.getPageObjectPackages();
 	}
 
 	/**
@@ -178,7 +260,7 @@ public class ConfigurationManager {
 	 * @throws MissingConfigurationException if no env variable has been set
 	 */
 	public static String getEnvironment() throws MissingConfigurationException {
-		String env = System.getProperty("env");
+		String env = getConfiguration().getEnvironment();
 		if (env == null)
 			throw new MissingConfigurationException("Enviroment is not set, please restart your test and pass -Denv=\"<your environment>\"");
 		return env;
@@ -219,7 +301,9 @@ public class ConfigurationManager {
 
 	/**
 	 * Returns the YAML config file path in the project for a given page object.
+	 * The src/ directory is only searched once.
 	 * 
+	 * @see sentinel.pages.PageDataCache#getConfigFile(String)
 	 * @param pageName String the name of the page object
 	 * @return File the OS path to the config file
 	 * @throws FileNotFoundException if the config file is not found in the project
@@ -227,7 +311,7 @@ public class ConfigurationManager {
 	 */
 	public static File getPageObjectConfigPath(String pageName) throws FileNotFoundException, AccessDeniedException {
 		String filename = pageName + ".yml";
-		File result = searchDirectory(new File("src/"), filename);
+		File result = PageDataCache.getConfigFile(filename);
 
 		if (result == null) {
 			String errorMessage = StringUtils.format("Failed to locate the {} configuration file. Please ensure the file exists in the same directory as the page object.", filename);
@@ -270,8 +354,9 @@ public class ConfigurationManager {
   
 	/**
 	 * Returns page data through yaml instructions to a config path in given pageName string. 
+	 * The data is cached and only read again if the file changes.
 	 * 
-	 * @see sentinel.utils.ConfigurationManager#getPageObjectConfigPath(String)
+	 * @see sentinel.pages.PageDataCache#getPageData(String)
 	 * @param pageName String the name of the page for which the data is retrieved
 	 * @return PageData the class for the data on desired page
 	 * @throws IOException if no data is returned
@@ -283,7 +368,7 @@ public class ConfigurationManager {
 	protected static PageData loadPageData(String pageName) throws ConfigurationParseException, ConfigurationMappingException, FileNotFoundException, IOException, AccessDeniedException {
 		PageData pageData = null;
 		try {
-			pageData = PageData.loadYaml(getPageObjectConfigPath(pageName));
+			pageData = PageDataCache.getPageData(pageName);
 		} catch (java.nio.file.AccessDeniedException e) {
 			String errorMessage = StringUtils.format("Could not access the file {}.yml. Please ensure the file can be read by the current user and is not password protected.", pageName);
 			log.error(errorMessage);
@@ -338,7 +423,7 @@ public class ConfigurationManager {
 		// Get the test environment. If none is passed, it defaults to dev. See the
 		// Readme.md file for how to pass the env
 		// on the command line.
-		String env = System.getProperty("env");
+		String env = getConfiguration().getEnvironment();
 		if (env == null)
 			env = "dev";
 
@@ -395,8 +480,9 @@ public class ConfigurationManager {
 	 * @throws ConfigurationMappingException if error occurs when mapping configuration values to sentinel
 	 * @throws AccessDeniedException if the sentinel configuration file cannot be read
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist
+	 * @throws AccountLeaseException if account pooling is on and no account becomes free in time
 	 */
-	public static String getUsernameOrPassword(String key) throws IOException, MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, PageNotFoundException, FileNotFoundException, AccessDeniedException {
+	public static String getUsernameOrPassword(String key) throws IOException, MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, PageNotFoundException, FileNotFoundException, AccessDeniedException, AccountLeaseException {
 		String env = getEnvironment();
 		return getUsernameOrPassword(PageManager.getPage().getName(), env, key);
 	}
@@ -413,11 +499,15 @@ public class ConfigurationManager {
 	 * @throws ConfigurationMappingException if error occurs when mapping configuration values to sentinel
 	 * @throws AccessDeniedException if the sentinel configuration file cannot be read
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist
+	 * @throws AccountLeaseException if account pooling is on and no account in the accounts section becomes free in time
 	 */
-	public static String getUsernameOrPassword(String pageName, String env, String key) throws IOException, ConfigurationParseException, ConfigurationMappingException, FileNotFoundException, AccessDeniedException{
+	public static String getUsernameOrPassword(String pageName, String env, String key) throws IOException, ConfigurationParseException, ConfigurationMappingException, FileNotFoundException, AccessDeniedException, AccountLeaseException {
 		PageData pageData = loadPageData(pageName);
-		log.debug(pageData.getAccount(env).get(key));
-		String data = pageData.getAccount(env).get(key);
+		Map<String, String> account = leaseAccount(pageName, env, pageData, null);
+		if (account == null) {
+			account = pageData.getAccount(env);
+		}
+		String data = account.get(key);
 		log.debug(data);
 		return data;
 	}
@@ -433,8 +523,9 @@ public class ConfigurationManager {
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist
 	 * @throws PageNotFoundException if no page is found
 	 * @throws MissingConfigurationException if the requested configuration property has not been set
+	 * @throws AccountLeaseException if account pooling is on and no account becomes free in time
 	 */
-	public static String getUsername(String account) throws IOException, ConfigurationParseException, ConfigurationMappingException, MissingConfigurationException, PageNotFoundException, FileNotFoundException, AccessDeniedException {
+	public static String getUsername(String account) throws IOException, ConfigurationParseException, ConfigurationMappingException, MissingConfigurationException, PageNotFoundException, FileNotFoundException, AccessDeniedException, AccountLeaseException {
 		return getUsernameOrPassword(account, "username");
 	}
 	
@@ -449,8 +540,9 @@ public class ConfigurationManager {
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist
 	 * @throws PageNotFoundException if no page is found
 	 * @throws MissingConfigurationException if the requested configuration property has not been set
+	 * @throws AccountLeaseException if account pooling is on and no account becomes free in time
 	 */
-	public static String getPassword(String account) throws IOException, ConfigurationParseException, ConfigurationMappingException, MissingConfigurationException, PageNotFoundException, FileNotFoundException, AccessDeniedException {
+	public static String getPassword(String account) throws IOException, ConfigurationParseException, ConfigurationMappingException, MissingConfigurationException, PageNotFoundException, FileNotFoundException, AccessDeniedException, AccountLeaseException {
 		return getUsernameOrPassword(account, "password");
 	}
 	
@@ -466,9 +558,10 @@ public class ConfigurationManager {
 	 * @throws ConfigurationMappingException if error occurs when mapping configuration values to sentinel
 	 * @throws AccessDeniedException if the sentinel configuration file cannot be read
 	 * @throws FileNotFoundException sentinel configuration file does not exist
+	 * @throws AccountLeaseException if account pooling is on and no account becomes free in time
 	 */
 
-	public static String getUsernameOrPassword(String account, String key) throws IOException, MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, PageNotFoundException, FileNotFoundException, AccessDeniedException {
+	public static String getUsernameOrPassword(String account, String key) throws IOException, MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, PageNotFoundException, FileNotFoundException, AccessDeniedException, AccountLeaseException {
 		String env = getEnvironment();
 		return getUsernameOrPassword(PageManager.getPage().getName(), env, account, key);
 	}
@@ -488,15 +581,37 @@ public class ConfigurationManager {
 	 * @throws ConfigurationMappingException if error occurs when mapping configuration values to sentinel
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist
 	 * @throws AccessDeniedException if the sentinel configuration file cannot be read
+	 * @throws AccountLeaseException if account pooling is on and the account does not become free in time
 	 */
 	public static String getUsernameOrPassword(String pageName, String env, String account, String key)
-			throws IOException, ConfigurationParseException, ConfigurationMappingException, FileNotFoundException, AccessDeniedException {
+			throws IOException, ConfigurationParseException, ConfigurationMappingException, FileNotFoundException, AccessDeniedException, AccountLeaseException {
 		PageData pageData = loadPageData(pageName);
-		log.debug(pageData.getAccount(env, account).get(key));
-		String data = pageData.getAccount(env, account).get(key);
+		Map<String, String> accountData = leaseAccount(pageName, env, pageData, account);
+		if (accountData == null) {
+			accountData = pageData.getAccount(env, account);
+		}
+		String data = accountData.get(key);
 		log.debug(data);
 		return data;
 	}
+
+	/**
+	 * Leases an account from the accounts section of a page if the accountPooling property is true.
+	 * 
+	 * @param pageName String the name of the page
+	 * @param env String the environment
+	 * @param pageData PageData the page's configuration
+	 * @param account String the account to lease, or null for any free account
+	 * @return Map&lt;String, String&gt; the leased account, or null if pooling is off or the page has no accounts for the environment
+	 * @throws AccountLeaseException if the account does not become free in time
+	 * @see sentinel.utils.AccountPool
+	 */
+	private static Map<String, String> leaseAccount(String pageName, String env, PageData pageData, String account) throws AccountLeaseException {
+		if (pageData.accounts == null || pageData.accounts.get(env) == null || !AccountPool.isEnabled()) {
+			return null;
+		}
+		return AccountPool.lease(pageName, env, pageData.accounts.get(env), account);
+	}
 	
 	/**
 	 * Returns configuration data for a specific key and environment.
@@ -551,12 +666,15 @@ public class ConfigurationManager {
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
 	 */
 	public static long getDefaultTimeout() throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
-		String timeoutProp = getOrCreateConfigurationData("timeout");
-		long timeout;
-		if(timeoutProp == null) {
-			timeout = ConfigurationManager.timeout;
-		} else {
-			timeout = Long.parseLong(timeoutProp);
+		ConfigurationSnapshot snapshot = getConfiguration();
+		if (!snapshot.isComplete()) {
+			getOrCreateConfigurationData("timeout");
+		}
+		long timeout = snapshot.getTimeout();
+		if (timeout < 0) {
+			String errorMessage = StringUtils.format("The timeout property '{}' is not a whole number. Please fix the configuration file or the -Dtimeout option.", snapshot.getTimeoutValue());
+			log.error(errorMessage);
+			throw new ConfigurationParseException(errorMessage);
 		}
 		return timeout;
 	}
@@ -575,54 +693,34 @@ public class ConfigurationManager {
 	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
 	 */
 	public static TimeUnit getDefaultTimeUnit() throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
-		String unit = StringUtils.capitalize(getOrCreateConfigurationData("timeunit"));
-		if(unit == null) {
-			return TimeUnit.SECONDS;
-		}
-		switch (unit) {
-		case "DAYS":
-			return TimeUnit.DAYS;
-		case "HOURS":
-			return TimeUnit.HOURS;
-		case "MINUTES":
-			return TimeUnit.MINUTES;
-		case "SECONDS":
-			return TimeUnit.SECONDS;
-		case "MICROSECONDS":
-			return TimeUnit.MICROSECONDS;
-		case "MILLISECONDS":
-			return TimeUnit.MILLISECONDS;
-		case "NANOSECONDS":
-			return TimeUnit.NANOSECONDS;
-		default:
-			return TimeUnit.SECONDS;
+		ConfigurationSnapshot snapshot = getConfiguration();
+		if (!snapshot.isComplete()) {
+			getOrCreateConfigurationData("timeunit");
 		}
+		return snapshot.getTimeUnit();
 	}
 
 	/**
-	 * Stores values in a property object for quick and dirty dependency injection.
+	 * Stores values for the current scenario for quick and dirty dependency injection.
 	 * Replaces space chars with '_' char, makes key all lowercase, and logs action.
 	 * 
+	 * @see sentinel.utils.ScenarioValueStore#put(String, String)
 	 * @param key String the key to set
 	 * @param value String the value to set
 	 */
 	public static void setValue(String key, String value) {
-		key = key.replaceAll("\\s+", "_").toLowerCase();
-		appProps.setProperty(key, value);
-		log.trace("Stored key/value pair: " + key + "/" + value);
+		ScenarioValueStore.put(key, value);
 	}
 
 	/**
 	 * Retrieves values between steps during quick and dirty dependency injection.
 	 * Replaces space chars with '_' char, makes key all lowercase, and logs action.
 	 *
+	 * @see sentinel.utils.ScenarioValueStore#get(String)
 	 * @param key String the item to get 
 	 * @return String the value for the given key
 	 */
 	public static String getValue(String key) {
-		key = key.replaceAll("\\s+", "_").toLowerCase();
-		String value = appProps.getProperty(key);
-		log.trace("Retrieved key/value pair: " + key + "/" + value);
-		return value;
+		return ScenarioValueStore.get(key);
 	}
 }
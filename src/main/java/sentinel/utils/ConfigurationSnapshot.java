@@ -0,0 +1,227 @@
+package sentinel.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable copy of the configuration, resolved once so that reading a
+ * property does not check system properties, walk the YAML maps or parse
+ * numbers again. The ConfigurationManager builds the snapshot the first time
+ * a property is read and publishes it for all threads; it is only rebuilt by
+ * ConfigurationManager.reloadConfiguration.
+ * <p>
+ * Values are taken from, in order of precedence:
+ * <ol>
+ * <li>System properties, e.g. -Dtimeout=20 on the command line</li>
+ * <li>Environment variables named SENTINEL_ followed by the property name in
+ * upper case with words separated by underscores, e.g. SENTINEL_TIMEOUT or
+ * SENTINEL_PAGE_OBJECT_PACKAGES</li>
+ * <li>The section of conf/sentinel.yml for the current environment</li>
+ * </ol>
+ * The environment itself is read from the env system property or the
+ * SENTINEL_ENV environment variable.
+ */
+public final class ConfigurationSnapshot {
+	static final String ENVIRONMENT_VARIABLE_PREFIX = "SENTINEL_";
+	static final long DEFAULT_TIMEOUT = 10L;
+	static final String DEFAULT_PACKAGES = "pages,apis";
+
+	private final String environment;
+	private final boolean complete;
+	private final Map<String, String> values;
+	// Environment variables with keys normalized by normalize, for properties the YAML file does not mention.
+	private final Map<String, String> environmentVariables;
+	private final Map<String, Map<String, String>> profiles;
+
+	private final String timeoutValue;
+	private final long timeout;
+	private final TimeUnit timeUnit;
+	private final String browser;
+	private final String[] pageObjectPackages;
+
+	/**
+	 * Resolves the configuration from the given sources.
+	 *
+	 * @param systemProperties Map&lt;String, String&gt; the system properties
+	 * @param environmentVariables Map&lt;String, String&gt; the process environment
+	 * @param yaml ConfigurationData the sentinel.yml file, or null if it could not be read
+	 */
+	ConfigurationSnapshot(Map<String, String> systemProperties, Map<String, String> environmentVariables, ConfigurationData yaml) {
+		Map<String, String> sentinelVariables = new HashMap<>();
+		for (Map.Entry<String, String> variable : environmentVariables.entrySet()) {
+			if (variable.getKey().startsWith(ENVIRONMENT_VARIABLE_PREFIX)) {
+				sentinelVariables.put(normalize(variable.getKey().substring(ENVIRONMENT_VARIABLE_PREFIX.length())), variable.getValue());
+			}
+		}
+		String env = systemProperties.get("env");
+		environment = env != null ? env : sentinelVariables.get(normalize("env"));
+
+		Map<String, String> resolved = new HashMap<>();
+		Map<String, String> section = null;
+		if (yaml != null && environment != null && yaml.configurations != null) {
+			section = yaml.configurations.get(environment);
+		}
+		if (section != null) {
+			for (Map.Entry<String, String> entry : section.entrySet()) {
+				String variable = sentinelVariables.get(normalize(entry.getKey()));
+				resolved.put(entry.getKey(), variable != null ? variable : entry.getValue());
+			}
+		}
+		resolved.putAll(systemProperties);
+		if (environment != null) {
+			resolved.put("env", environment);
+		}
+		values = Collections.unmodifiableMap(resolved);
+		this.environmentVariables = Collections.unmodifiableMap(sentinelVariables);
+		profiles = copyProfiles(yaml == null ? null : yaml.profiles);
+		// Without the YAML file or an environment, a missing value may be an error rather than an unset property.
+		complete = yaml != null && environment != null;
+
+		timeoutValue = get("timeout");
+		timeout = parseTimeout(timeoutValue);
+		timeUnit = parseTimeUnit(get("timeunit"));
+		browser = get("browser");
+		String packages = get("pageObjectPackages");
+		pageObjectPackages = StringUtils.split(packages == null ? DEFAULT_PACKAGES : packages + "," + DEFAULT_PACKAGES, ',');
+	}
+
+	/**
+	 * Returns the value of a property.
+	 *
+	 * @param key String the property name
+	 * @return String the value, or null if it is not set
+	 */
+	public String get(String key) {
+		String value = values.get(key);
+		if (value == null && !environmentVariables.isEmpty()) {
+			value = environmentVariables.get(normalize(key));
+		}
+		return value;
+	}
+
+	/**
+	 * Returns true if both the environment and the YAML file were available
+	 * when the snapshot was made, so that a property with no value is simply
+	 * not set.
+	 *
+	 * @return boolean true if every source was read
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Returns the environment the tests are running against.
+	 *
+	 * @return String the environment, or null if it is not set
+	 */
+	public String getEnvironment() {
+		return environment;
+	}
+
+	/**
+	 * Returns the timeout property, defaulting to 10.
+	 *
+	 * @return long the timeout, or -1 if the timeout property is not a number
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Returns the timeout property as it was set, for error messages.
+	 *
+	 * @return String the raw timeout value, or null if it is not set
+	 */
+	String getTimeoutValue() {
+		return timeoutValue;
+	}
+
+	/**
+	 * Returns the timeunit property, defaulting to seconds. The value is not
+	 * case sensitive.
+	 *
+	 * @return TimeUnit the time unit for the timeout
+	 */
+	public TimeUnit getTimeUnit() {
+		return timeUnit;
+	}
+
+	/**
+	 * Returns the browser property.
+	 *
+	 * @return String the browser, or null if it is not set
+	 */
+	public String getBrowser() {
+		return browser;
+	}
+
+	/**
+	 * Returns the packages searched for page and API objects, the
+	 * pageObjectPackages property followed by the default packages.
+	 *
+	 * @return String[] the package names
+	 */
+	public String[] getPageObjectPackages() {
+		return pageObjectPackages.clone();
+	}
+
+	/**
+	 * Returns the settings of the named browser profile.
+	 *
+	 * @param profileName String the name of the profile
+	 * @return Map&lt;String, String&gt; the profile settings, which cannot be changed, or null if no profile has that name
+	 */
+	public Map<String, String> getProfile(String profileName) {
+		return profiles.get(profileName);
+	}
+
+	/**
+	 * Copies the profiles section into unmodifiable maps, so that changing the
+	 * YAML data or a returned profile cannot change the snapshot.
+	 */
+	private static Map<String, Map<String, String>> copyProfiles(Map<String, Map<String, String>> profiles) {
+		if (profiles == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, Map<String, String>> copy = new HashMap<>();
+		for (Map.Entry<String, Map<String, String>> profile : profiles.entrySet()) {
+			Map<String, String> settings = profile.getValue();
+			copy.put(profile.getKey(), settings == null ? null : Collections.unmodifiableMap(new HashMap<>(settings)));
+		}
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * Lower cases a property or environment variable name and removes
+	 * underscores, so that SENTINEL_PAGE_OBJECT_PACKAGES matches pageObjectPackages.
+	 */
+	static String normalize(String name) {
+		return name.replace("_", "").toLowerCase(Locale.ROOT);
+	}
+
+	private static long parseTimeout(String value) {
+		if (value == null) {
+			return DEFAULT_TIMEOUT;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static TimeUnit parseTimeUnit(String value) {
+		if (value == null) {
+			return TimeUnit.SECONDS;
+		}
+		try {
+			return TimeUnit.valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			return TimeUnit.SECONDS;
+		}
+	}
+}
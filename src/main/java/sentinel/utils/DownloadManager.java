@@ -6,16 +6,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.imageio.ImageIO;
 
@@ -95,72 +90,48 @@ public class DownloadManager {
 
     /**
      * Returns the name of a downloaded file by monitoring the given download directory and looking for a
-     * file to be downloaded with the given file extension. It checks the given
-     * directory every 1/10th of a second under the file download is complete, and
-     * then returns the name of the file downloaded. If the download takes longer
-     * than 20 seconds, the function times out and throws an error.
+     * file to be downloaded with the given file extension. Partial files are ignored, and the file is
+     * only returned once the browser has finished writing it. If the download takes longer
+     * than the downloadTimeout property (defaults to 20 seconds), the function times out and returns null.
      * 
      * @param downloadDir String path to the download directory.
      * @param fileExtension String extension of the file type you are expecting to be  downloaded.
      * @return String The name of the file that was downloaded.
+     * @see sentinel.utils.DownloadWatcher
      */
     public static String monitorDownload(String downloadDir, String fileExtension) {
-        String downloadedFileName = null;
-        boolean valid = true;
-        boolean found = false;
-
-        // default timeout in seconds
-        long timeOut = 20;
+        DownloadWatcher.DownloadedFile download = null;
+        Future<DownloadWatcher.DownloadedFile> future = null;
+        long timeOut = getDownloadTimeout();
         try {
-            Path downloadFolderPath = Paths.get(downloadDir);
-            WatchService watchService = FileSystems.getDefault().newWatchService();
-            downloadFolderPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
-            long startTime = System.currentTimeMillis();
-            do {
-                WatchKey watchKey;
-                watchKey = watchService.poll(timeOut, TimeUnit.SECONDS);
-                long currentTime = (System.currentTimeMillis() - startTime) / 1000;
-                if (currentTime > timeOut) {
-                    log.error("Download operation timed out.. Expected file was not downloaded");
-                    return downloadedFileName;
-                }
-
-                for (WatchEvent<?> event : watchKey.pollEvents()) {
-                    WatchEvent.Kind<?> kind = event.kind();
-                    if (kind.equals(StandardWatchEventKinds.ENTRY_CREATE)) {
-                        String fileName = event.context().toString();
-                        log.debug("New File Created: " + fileName);
-                        if (fileName.endsWith(fileExtension)) {
-                            downloadedFileName = fileName;
-                            log.debug("Downloaded file found with extension " + fileExtension + ". File name is "
-                                    + fileName);
-                            Thread.sleep(100);
-                            found = true;
-                            break;
-                        }
-                    }
-                }
-                if (found) {
-                    return downloadedFileName;
-                } else {
-                    currentTime = (System.currentTimeMillis() - startTime) / 1000;
-                    if (currentTime > timeOut) {
-                        log.error("Failed to download expected file");
-                        return downloadedFileName;
-                    }
-                    valid = watchKey.reset();
-                }
-            } while (valid);
-        }
-
-        catch (InterruptedException e) {
-            log.error("Interrupted error - " + e.getMessage());
-        } catch (NullPointerException e) {
+            future = DownloadWatcher.getInstance().expect(downloadDir, fileExtension);
+            download = future.get(timeOut, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
             log.error("Download operation timed out.. Expected file was not downloaded");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted error - " + e.getMessage());
         } catch (Exception e) {
             log.error("Error occured - " + e.getMessage());
+        } finally {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+        if (download == null) {
+            return null;
+        }
+        log.debug("Downloaded file found with extension {}. File name is {}, sha256 {}", fileExtension, download.getName(), download.getSha256());
+        return download.getName();
+    }
+
+    private static long getDownloadTimeout() {
+        try {
+            String timeout = ConfigurationManager.getProperty("downloadTimeout");
+            return timeout == null ? 20 : Long.parseLong(timeout.trim());
+        } catch (Exception e) {
+            return 20;
         }
-        return downloadedFileName;
     }
 
     /**
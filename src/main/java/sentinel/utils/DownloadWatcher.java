@@ -0,0 +1,468 @@
+package sentinel.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Watches download directories for finished downloads. One background thread
+ * serves every scenario, so any number of downloads can be expected at once,
+ * in the same directory or in different ones.
+ * <p>
+ * A scenario calls expect before it starts a download and waits on the
+ * returned future. A file is finished when a browser renames its partial file
+ * (e.g. report.pdf.crdownload or report.pdf.part) to the final name, or when
+ * the file has not grown for the downloadStableMillis property (defaults to
+ * 500 milliseconds). Partial files whose final name cannot be told from their
+ * own, such as Chrome's .com.google.Chrome.* files, only use the second rule.
+ * Partial files and empty files are never reported. The SHA-256 checksum is
+ * computed while the file is being written, so it is ready as soon as the
+ * download finishes.
+ * <p>
+ * Each finished file goes to the oldest waiting expectation it matches.
+ * Files that finish before anyone expects them are kept for a short while, so
+ * a scenario that starts watching just after clicking the link still gets its
+ * file.
+ *
+ * @see sentinel.utils.DownloadManager#monitorDownload(String, String)
+ */
+public class DownloadWatcher {
+    private static final Logger log = LogManager.getLogger(DownloadWatcher.class.getName()); // Create a logger.
+
+    private static final String[] PARTIAL_EXTENSIONS = { ".crdownload", ".part", ".tmp", ".download" };
+    private static final long TICK_MILLIS = 100;
+    private static final long IDLE_MILLIS = 1000;
+    private static final long UNCLAIMED_MILLIS = 60000;
+    private static final long RENAME_MILLIS = 5000;
+    private static final int UNCLAIMED_LIMIT = 50;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static DownloadWatcher instance = null;
+
+    private final WatchService watchService;
+    private final Thread thread;
+    private final ConcurrentHashMap<Path, WatchKey> directories = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Expectation> expectations = new ConcurrentLinkedQueue<>();
+    // Only touched by the watcher thread.
+    private final Map<Path, Candidate> candidates = new HashMap<>();
+    // Final names of partial files that have just gone, for renames whose new name is reported later. Watcher thread only.
+    private final Map<Path, Long> renamedTo = new HashMap<>();
+    // Guarded by itself.
+    private final ArrayDeque<DownloadedFile> unclaimed = new ArrayDeque<>();
+
+    private DownloadWatcher() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "sentinel-download-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the watcher, starting its thread the first time it is called.
+     *
+     * @return DownloadWatcher the watcher
+     * @throws IOException if the file system cannot be watched
+     */
+    public static synchronized DownloadWatcher getInstance() throws IOException {
+        if (instance == null) {
+            instance = new DownloadWatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * A finished download.
+     */
+    public static class DownloadedFile {
+        private final File file;
+        private final long size;
+        private final String sha256;
+        private final long finishedAt;
+
+        private DownloadedFile(File file, long size, String sha256, long finishedAt) {
+            this.file = file;
+            this.size = size;
+            this.sha256 = sha256;
+            this.finishedAt = finishedAt;
+        }
+
+        /**
+         * Returns the downloaded file.
+         *
+         * @return File the file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the name of the downloaded file.
+         *
+         * @return String the file name
+         */
+        public String getName() {
+            return file.getName();
+        }
+
+        /**
+         * Returns the size of the file when the download finished.
+         *
+         * @return long the size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the SHA-256 checksum of the file.
+         *
+         * @return String the checksum as lower case hex
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+        @Override
+        public String toString() {
+            return StringUtils.format("{} ({} bytes, sha256 {})", file, size, sha256);
+        }
+    }
+
+    /**
+     * Starts waiting for a file with the given extension to finish downloading
+     * into the given directory. Call this before starting the download. Cancel
+     * the future to stop waiting.
+     *
+     * @param downloadDirectory String the directory the browser downloads to
+     * @param fileExtension String the extension of the expected file, e.g. pdf
+     * @return CompletableFuture&lt;DownloadedFile&gt; completed when the file has finished downloading
+     * @throws IOException if the directory cannot be created or watched
+     */
+    public CompletableFuture<DownloadedFile> expect(String downloadDirectory, String fileExtension) throws IOException {
+        Path directory = Paths.get(downloadDirectory).toAbsolutePath().normalize();
+        watch(directory);
+        Expectation expectation = new Expectation(directory, fileExtension);
+        DownloadedFile claimed = claimUnclaimed(expectation);
+        if (claimed != null) {
+            expectation.future.complete(claimed);
+        } else {
+            expectations.add(expectation);
+        }
+        return expectation.future;
+    }
+
+    private void watch(Path directory) throws IOException {
+        if (directories.containsKey(directory)) {
+            return;
+        }
+        synchronized (directories) {
+            if (!directories.containsKey(directory)) {
+                Files.createDirectories(directory);
+                directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+                log.debug("Watching {} for downloads", directory);
+            }
+        }
+    }
+
+    /**
+     * The watcher thread: reads file events, then checks on the files being
+     * downloaded every tick.
+     */
+    private void watch() {
+        while (true) {
+            try {
+                WatchKey key = watchService.poll(candidates.isEmpty() ? IDLE_MILLIS : TICK_MILLIS, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    handleEvents(key);
+                    key = watchService.poll();
+                }
+                checkCandidates();
+                expireExpectations();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Download watcher error - " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void handleEvents(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind.equals(StandardWatchEventKinds.OVERFLOW)) {
+                rescan(directory);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            String name = path.getFileName().toString();
+            if (isPartial(name)) {
+                // A browser finishing a download renames the partial file to its final name.
+                String finalName = getFinalName(name);
+                if (finalName != null && kind.equals(StandardWatchEventKinds.ENTRY_DELETE)) {
+                    Path finalPath = directory.resolve(finalName);
+                    Candidate renamed = candidates.get(finalPath);
+                    if (renamed != null) {
+                        renamed.renamed = true;
+                    } else {
+                        renamedTo.put(finalPath, System.currentTimeMillis());
+                    }
+                }
+                continue;
+            }
+            if (kind.equals(StandardWatchEventKinds.ENTRY_DELETE)) {
+                candidates.remove(path);
+                continue;
+            }
+            Candidate candidate = candidates.get(path);
+            if (candidate == null) {
+                candidate = new Candidate(path);
+                candidate.renamed = renamedTo.remove(path) != null;
+                candidates.put(path, candidate);
+                log.debug("New File Created: {}", name);
+            }
+            candidate.lastEvent = System.currentTimeMillis();
+        }
+        if (!key.reset()) {
+            directories.remove(directory);
+            log.warn("{} can no longer be watched for downloads", directory);
+        }
+    }
+
+    /**
+     * Events were lost, so pick up every recent file in the directory.
+     */
+    private void rescan(Path directory) {
+        File[] files = directory.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        long since = System.currentTimeMillis() - UNCLAIMED_MILLIS;
+        for (File file : files) {
+            Path path = file.toPath();
+            if (file.isFile() && !isPartial(file.getName()) && file.lastModified() >= since && !candidates.containsKey(path)) {
+                candidates.put(path, new Candidate(path));
+            }
+        }
+    }
+
+    private void checkCandidates() {
+        long now = System.currentTimeMillis();
+        long stableMillis = getStableMillis();
+        Iterator<Long> renames = renamedTo.values().iterator();
+        while (renames.hasNext()) {
+            if (now - renames.next() > RENAME_MILLIS) {
+                renames.remove();
+            }
+        }
+        Iterator<Candidate> iterator = candidates.values().iterator();
+        while (iterator.hasNext()) {
+            Candidate candidate = iterator.next();
+            File file = candidate.path.toFile();
+            if (!file.isFile()) {
+                iterator.remove();
+                continue;
+            }
+            long size = file.length();
+            long modified = file.lastModified();
+            if (size != candidate.size || modified != candidate.modified) {
+                candidate.size = size;
+                candidate.modified = modified;
+                candidate.lastEvent = now;
+            }
+            try {
+                candidate.hash();
+            } catch (IOException e) {
+                // Some browsers lock the file while writing it; try again next tick.
+                log.trace("Could not read {} yet: {}", file, e.getMessage());
+                continue;
+            }
+            if (size > 0 && (candidate.renamed || now - candidate.lastEvent >= stableMillis)) {
+                iterator.remove();
+                finished(new DownloadedFile(file, candidate.hashed, candidate.digest(), now));
+            }
+        }
+    }
+
+    private void finished(DownloadedFile download) {
+        log.debug("Download finished: {}", download);
+        for (Expectation expectation : expectations) {
+            if (expectation.matches(download) && expectations.remove(expectation)) {
+                if (expectation.future.complete(download)) {
+                    return;
+                }
+            }
+        }
+        synchronized (unclaimed) {
+            unclaimed.addLast(download);
+            while (unclaimed.size() > UNCLAIMED_LIMIT) {
+                unclaimed.removeFirst();
+            }
+        }
+    }
+
+    private DownloadedFile claimUnclaimed(Expectation expectation) {
+        long since = System.currentTimeMillis() - UNCLAIMED_MILLIS;
+        synchronized (unclaimed) {
+            Iterator<DownloadedFile> iterator = unclaimed.iterator();
+            while (iterator.hasNext()) {
+                DownloadedFile download = iterator.next();
+                if (download.finishedAt < since) {
+                    iterator.remove();
+                } else if (expectation.matches(download)) {
+                    iterator.remove();
+                    return download;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops expectations whose callers have stopped waiting.
+     */
+    private void expireExpectations() {
+        Iterator<Expectation> iterator = expectations.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().future.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isPartial(String name) {
+        String lower = name.toLowerCase();
+        for (String extension : PARTIAL_EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        // Chrome's temporary files, e.g. .com.google.Chrome.a1b2c3
+        return lower.startsWith(".com.google.chrome.");
+    }
+
+    /**
+     * Returns the name a partial file will be renamed to, e.g. report.pdf for
+     * report.pdf.crdownload, or null if it cannot be told from the name.
+     */
+    private static String getFinalName(String partialName) {
+        String lower = partialName.toLowerCase();
+        for (String extension : PARTIAL_EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                String finalName = partialName.substring(0, partialName.length() - extension.length());
+                // Chrome's "Unconfirmed 123.crdownload" has no final name in it.
+                return finalName.contains(".") && !finalName.startsWith("Unconfirmed ") ? finalName : null;
+            }
+        }
+        return null;
+    }
+
+    private static long getStableMillis() {
+        try {
+            String stable = ConfigurationManager.getProperty("downloadStableMillis");
+            return stable == null ? 500 : Long.parseLong(stable.trim());
+        } catch (Exception e) {
+            return 500;
+        }
+    }
+
+    /**
+     * A scenario waiting for a download.
+     */
+    private static class Expectation {
+        private final Path directory;
+        private final String fileExtension;
+        private final CompletableFuture<DownloadedFile> future = new CompletableFuture<>();
+
+        private Expectation(Path directory, String fileExtension) {
+            this.directory = directory;
+            this.fileExtension = fileExtension;
+        }
+
+        private boolean matches(DownloadedFile download) {
+            return download.file.toPath().getParent().equals(directory)
+                    && (fileExtension == null || download.getName().endsWith(fileExtension));
+        }
+    }
+
+    /**
+     * A file that may still be downloading. The checksum is updated with the
+     * new bytes every tick; if the file shrinks it is started again.
+     */
+    private static class Candidate {
+        private final Path path;
+        private long size = -1;
+        private long modified = -1;
+        private long lastEvent = System.currentTimeMillis();
+        private boolean renamed = false;
+        private MessageDigest digest = newDigest();
+        private long hashed = 0;
+
+        private Candidate(Path path) {
+            this.path = path;
+        }
+
+        private void hash() throws IOException {
+            if (size < hashed) {
+                digest = newDigest();
+                hashed = 0;
+            }
+            if (size == hashed) {
+                return;
+            }
+            try (RandomAccessFile in = new RandomAccessFile(path.toFile(), "r")) {
+                in.seek(hashed);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while (hashed < size && (read = in.read(buffer, 0, (int) Math.min(buffer.length, size - hashed))) > 0) {
+                    digest.update(buffer, 0, read);
+                    hashed += read;
+                }
+            }
+        }
+
+        private String digest() {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+
+        private static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package sentinel.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.WrapsDriver;
+import org.openqa.selenium.internal.WrapsElement;
+
+/**
+ * Wraps a driver in a dynamic proxy that reports every command to a listener.
+ * Elements, lists of elements and the navigation, window, timeout and input
+ * objects the driver returns are wrapped too, so commands made through them
+ * are reported as well. Elements are labelled with the locator that found them.
+ * Elements returned by a script are labelled "by script" until relabel gives
+ * them the locator of the PageElement they belong to.
+ * <p>
+ * Proxied elements implement WrapsElement, and are unwrapped before being
+ * passed back to the driver as script arguments.
+ */
+final class DriverDecorator {
+
+	/**
+	 * Called around every command made through a decorated driver.
+	 */
+	interface Listener {
+		/**
+		 * Called before the command is sent to the driver.
+		 *
+		 * @param command String the command name, e.g. findElement, WebElement.click or navigate.to
+		 * @param locator String the locator of the element the command is made on, or null for driver commands
+		 */
+		void before(String command, String locator);
+
+		/**
+		 * Called after the command returns or throws.
+		 *
+		 * @param command String the command name
+		 * @param locator String the locator of the element the command was made on, or null for driver commands
+		 * @param nanos long how long the command took
+		 */
+		void after(String command, String locator, long nanos);
+	}
+
+	private DriverDecorator() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * Wraps a driver so that every command made through it is reported to the listener.
+	 *
+	 * @param driver WebDriver the driver to wrap
+	 * @param listener Listener the listener to report commands to
+	 * @return WebDriver a proxy implementing every interface the driver implements
+	 */
+	static WebDriver wrap(WebDriver driver, Listener listener) {
+		Context context = new Context(driver, listener);
+		context.rootProxy = proxy(driver, context, "", null, WrapsDriver.class);
+		return (WebDriver) context.rootProxy;
+	}
+
+	/**
+	 * Returns the element labelled with the given locator, so that commands made
+	 * on an element found by a script are recorded under the locator it was
+	 * looked up with. Anything that is not an element from a decorated driver
+	 * is returned unchanged.
+	 *
+	 * @param element WebElement the element, as returned by a decorated driver
+	 * @param locator String the locator to record its commands under
+	 * @return WebElement the relabelled element
+	 */
+	static WebElement relabel(WebElement element, String locator) {
+		if (element != null && Proxy.isProxyClass(element.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(element);
+			if (handler instanceof Handler && ((Handler) handler).target instanceof WebElement) {
+				Handler found = (Handler) handler;
+				return (WebElement) proxy(found.target, found.context, found.prefix, locator, WrapsElement.class);
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * Creates a proxy implementing every public interface of the target, plus
+	 * the given extra interface so that callers can get the original back.
+	 */
+	private static Object proxy(Object target, Context context, String prefix, String locator, Class<?> unwrapInterface) {
+		Set<Class<?>> interfaces = new LinkedHashSet<>();
+		for (Class<?> type : ClassUtils.getAllInterfaces(target.getClass())) {
+			if (Modifier.isPublic(type.getModifiers())) {
+				interfaces.add(type);
+			}
+		}
+		if (unwrapInterface != null) {
+			interfaces.add(unwrapInterface);
+		}
+		return Proxy.newProxyInstance(DriverDecorator.class.getClassLoader(), interfaces.toArray(new Class<?>[interfaces.size()]),
+				new Handler(target, context, prefix, locator));
+	}
+
+	/**
+	 * Returns the object a proxy wraps, or the object itself if it is not one of our proxies.
+	 */
+	private static Object unwrap(Object value) {
+		if (value != null && Proxy.isProxyClass(value.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(value);
+			if (handler instanceof Handler) {
+				return ((Handler) handler).target;
+			}
+		}
+		if (value instanceof Object[]) {
+			Object[] array = (Object[]) value;
+			Object[] copy = array.clone();
+			for (int i = 0; i < array.length; i++) {
+				copy[i] = unwrap(array[i]);
+			}
+			return copy;
+		}
+		if (value instanceof List) {
+			List<Object> copy = new ArrayList<>();
+			for (Object item : (List<?>) value) {
+				copy.add(unwrap(item));
+			}
+			return copy;
+		}
+		return value;
+	}
+
+	/**
+	 * The driver a set of proxies was created from, so that methods returning
+	 * the driver itself (such as switchTo().window()) return the proxy instead.
+	 */
+	private static class Context {
+		private final WebDriver driver;
+		private final Listener listener;
+		private Object rootProxy;
+
+		Context(WebDriver driver, Listener listener) {
+			this.driver = driver;
+			this.listener = listener;
+		}
+	}
+
+	private static class Handler implements InvocationHandler {
+		private final Object target;
+		private final Context context;
+		private final String prefix;
+		private final String locator;
+
+		Handler(Object target, Context context, String prefix, String locator) {
+			this.target = target;
+			this.context = context;
+			this.prefix = prefix;
+			this.locator = locator;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (method.getDeclaringClass() == Object.class) {
+				if (name.equals("equals")) {
+					return target.equals(unwrap(args[0]));
+				}
+				return method.invoke(target, args);
+			}
+			if (name.equals("getWrappedDriver") && method.getDeclaringClass() == WrapsDriver.class) {
+				return context.driver;
+			}
+			if (name.equals("getWrappedElement") && method.getDeclaringClass() == WrapsElement.class) {
+				return target;
+			}
+
+			Object[] targetArgs = args == null ? null : (Object[]) unwrap(args);
+			String command = prefix + name;
+			context.listener.before(command, locator);
+			Object result;
+			long start = System.nanoTime();
+			try {
+				result = method.invoke(target, targetArgs);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			} finally {
+				context.listener.after(command, locator, System.nanoTime() - start);
+			}
+			return wrapResult(result, method, args);
+		}
+
+		private Object wrapResult(Object result, Method method, Object[] args) {
+			if (result == null) {
+				return null;
+			}
+			if (result == context.driver) {
+				return context.rootProxy;
+			}
+			if (result instanceof WebElement) {
+				return proxy(result, context, "WebElement.", locatorFor(args), WrapsElement.class);
+			}
+			if (result instanceof List) {
+				// findElements, or a script that returns elements.
+				String found = locatorFor(args);
+				List<Object> elements = new ArrayList<>();
+				for (Object element : (List<?>) result) {
+					elements.add(element instanceof WebElement ? proxy(element, context, "WebElement.", found, WrapsElement.class) : element);
+				}
+				return elements;
+			}
+			Class<?> type = method.getReturnType();
+			// Navigation, Options, TargetLocator, Timeouts, Window, Keyboard, Mouse and so on.
+			if (type.isInterface() && type.getName().startsWith("org.openqa.selenium.")) {
+				return proxy(result, context, prefix + method.getName() + ".", locator, null);
+			}
+			return result;
+		}
+
+		/**
+		 * Names an element by the locator that found it, qualified by the
+		 * locator of the element it was found in.
+		 */
+		private String locatorFor(Object[] args) {
+			String found = args != null && args.length > 0 && args[0] instanceof By ? args[0].toString() : "by script";
+			return locator == null ? found : locator + " > " + found;
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package sentinel.utils;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -9,6 +9,7 @@ import org.apache.logging.log4j.Logger;
 import sentinel.elements.*;
 import sentinel.exceptions.SentinelException;
 import sentinel.exceptions.NoSuchElementException;
+import sentinel.exceptions.NoSuchSelectorException;
 import sentinel.exceptions.PageNotFoundException;
 import sentinel.pages.Page;
 import sentinel.pages.PageManager;
@@ -37,29 +38,47 @@ public abstract class ElementFunctions {
      */
     public static PageElement getElement(String elementName) throws NoSuchElementException, PageNotFoundException {
         Page page = PageManager.getPage();
-        elementName = elementName.replaceAll("\\s+", "_").toLowerCase();
-        Method pageElementName = null;
-        try { // Create a Method object to store the PageElementwe want to exercise;
-            pageElementName = page.getClass().getMethod(elementName);
-        } catch (NoSuchMethodException e) {
+        elementName = MethodRegistry.normalize(elementName);
+        MethodRegistry registry = MethodRegistry.getRegistry(page.getClass(), PageElement.class);
+        if (!registry.contains(elementName)) {
             String errorMessage = StringUtils.format("Element {} is not defined for the page object {}. Make sure you have spelled the page object name correctly in your Cucumber step definition and in the page object.", elementName, page
                     .getClass().getSimpleName());
             log.error(errorMessage);
-            throw new NoSuchElementException(errorMessage, e);
+            throw new NoSuchElementException(errorMessage);
         }
         PageElement element = null;
         try {  // Invoke the creation of the PageElement and return it into a variable if no exception is thrown.
-            element = (PageElement) pageElementName.invoke(page);
-            log.trace("PageElement Name: " + pageElementName.getName());
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-        	String errorMessage = StringUtils.format("PageElement {} could not be found on Page {}. Please ensure the element is defined on the page.", pageElementName.getName(), page.getName());
+            element = (PageElement) registry.invoke(page, elementName);
+            log.trace("PageElement Name: " + elementName);
+        } catch (Exception e) {
+        	String errorMessage = StringUtils.format("PageElement {} could not be created on Page {}: {}", elementName, page.getName(), e.getMessage());
         	log.error(errorMessage);
-        	throw new NoSuchElementException(errorMessage);
+        	throw new NoSuchElementException(errorMessage, e);
         } 
 
         return element;
     }
 
+    /**
+     * Returns the PageElement objects for the given element names on the current page, with their WebElements
+     * already found on the page using a single round trip to the browser.
+     * 
+     * @see sentinel.elements.ElementResolver#resolve(List)
+     * @param elementNames String... names of the requested elements
+     * @return List&lt;PageElement&gt; the requested elements, in the order they were requested
+     * @throws PageNotFoundException if no page object found or defined.
+     * @throws NoSuchElementException if an element is not found or defined.
+     * @throws NoSuchSelectorException if the selector type of an element is invalid
+     */
+    public static List<PageElement> getElements(String... elementNames) throws NoSuchElementException, PageNotFoundException, NoSuchSelectorException {
+        List<PageElement> elements = new ArrayList<>();
+        for (String elementName : elementNames) {
+            elements.add(getElement(elementName));
+        }
+        ElementResolver.resolve(elements);
+        return elements;
+    }
+
     /**
      * Returns the Button associated with the element name on the currently active
      * page.
@@ -0,0 +1,151 @@
+package sentinel.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Stores, for each Page or API class, the methods that create its PageElements
+ * or Actions so that step definitions can look them up by name without using
+ * reflection on every step. A registry is built once per class, the first time
+ * it is asked for, and is shared from then on.
+ * <p>
+ * Element and action names used in Cucumber steps are normalized the same way
+ * they always have been (whitespace replaced with underscores, then lower
+ * cased). The result is cached so the regular expression only runs once for
+ * each distinct name.
+ * <p>
+ * <b>Example:</b>
+ * <p>
+ * <code>MethodRegistry.getRegistry(page.getClass(), PageElement.class).invoke(page, "Login Button");</code>
+ */
+public class MethodRegistry {
+	private static final Logger log = LogManager.getLogger(MethodRegistry.class); // Create a logger.
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final MethodType GENERIC_GETTER = MethodType.methodType(Object.class, Object.class);
+
+	// Keyed by the type of method registered, then by the Page or API class.
+	private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, MethodRegistry>> registries = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, String> normalizedNames = new ConcurrentHashMap<>();
+
+	private final Class<?> type;
+	private final Map<String, MethodHandle> handles;
+
+	private MethodRegistry(Class<?> type, Class<?> returnType) {
+		this.type = type;
+		Map<String, MethodHandle> found = new HashMap<>();
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		for (Method method : type.getMethods()) {
+			if (method.getParameterTypes().length != 0 || Modifier.isStatic(method.getModifiers())
+					|| !returnType.isAssignableFrom(method.getReturnType())) {
+				continue;
+			}
+			try {
+				found.put(method.getName(), lookup.unreflect(method).asType(GENERIC_GETTER));
+			} catch (IllegalAccessException e) {
+				log.trace("{}.{} could not be registered: {}", type.getSimpleName(), method.getName(), e.getMessage());
+			}
+		}
+		this.handles = Collections.unmodifiableMap(found);
+		log.trace("Registered {} {} methods for {}", handles.size(), returnType.getSimpleName(), type.getName());
+	}
+
+	/**
+	 * Returns the registry for the given class, building it the first time it is
+	 * requested. Only public, non-static methods that take no arguments and return
+	 * the given return type (or a subclass of it) are registered. A class has a
+	 * separate registry for each return type.
+	 * 
+	 * @param type Class&lt;?&gt; the Page or API class
+	 * @param returnType Class&lt;?&gt; the type returned by the methods to register, e.g. PageElement or Action
+	 * @return MethodRegistry the registry for the class
+	 */
+	public static MethodRegistry getRegistry(Class<?> type, Class<?> returnType) {
+		ConcurrentHashMap<Class<?>, MethodRegistry> byType = registries.get(returnType);
+		if (byType == null) {
+			byType = new ConcurrentHashMap<>();
+			ConcurrentHashMap<Class<?>, MethodRegistry> existing = registries.putIfAbsent(returnType, byType);
+			if (existing != null) {
+				byType = existing;
+			}
+		}
+		MethodRegistry registry = byType.get(type);
+		if (registry == null) {
+			registry = new MethodRegistry(type, returnType);
+			MethodRegistry existing = byType.putIfAbsent(type, registry);
+			if (existing != null) {
+				registry = existing;
+			}
+		}
+		return registry;
+	}
+
+	/**
+	 * Returns the name used as a method name for the given step text, by replacing
+	 * whitespace with underscores and lower casing it.
+	 * 
+	 * @param name String the element or action name as written in a step
+	 * @return String the normalized method name
+	 */
+	public static String normalize(String name) {
+		String normalized = normalizedNames.get(name);
+		if (normalized == null) {
+			normalized = WHITESPACE.matcher(name).replaceAll("_").toLowerCase();
+			normalizedNames.putIfAbsent(name, normalized);
+		}
+		return normalized;
+	}
+
+	/**
+	 * Returns true if a method with the given normalized name is registered.
+	 * 
+	 * @param methodName String the normalized method name
+	 * @return boolean true if the method is registered, otherwise false
+	 */
+	public boolean contains(String methodName) {
+		return handles.containsKey(methodName);
+	}
+
+	/**
+	 * Calls the registered method with the given normalized name on the target
+	 * object and returns the result.
+	 * 
+	 * @param target Object the Page or API object to call the method on
+	 * @param methodName String the normalized method name
+	 * @return Object the value returned by the method, or null if no such method is registered
+	 * @throws Exception any exception thrown by the method itself
+	 */
+	public Object invoke(Object target, String methodName) throws Exception {
+		MethodHandle handle = handles.get(methodName);
+		if (handle == null) {
+			return null;
+		}
+		try {
+			return (Object) handle.invokeExact(target);
+		} catch (Error | Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			// Only a Throwable subclass outside of Error and Exception ends up here.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the class this registry was built for.
+	 * 
+	 * @return Class&lt;?&gt; the Page or API class
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+}
@@ -0,0 +1,331 @@
+package sentinel.utils;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+
+import sentinel.exceptions.ConfigurationMappingException;
+import sentinel.exceptions.ConfigurationParseException;
+import sentinel.exceptions.FileNotFoundException;
+import sentinel.exceptions.IOException;
+import sentinel.exceptions.MissingConfigurationException;
+
+/**
+ * Supplies RemoteWebDriver with HTTP clients that share one pool of keep-alive
+ * connections, so each WebDriver command reuses an open connection to the hub
+ * instead of paying for a new TCP and TLS handshake.
+ * <p>
+ * Pool limits and timeouts are read from the remoteMaxConnections,
+ * remoteConnectTimeout and remoteReadTimeout properties. The latency of every
+ * command is recorded by HTTP method and path, with session and element ids
+ * replaced by placeholders, and can be read with getLatencies or
+ * getLatencyReport. The shared factory adds its latency report to the
+ * RunSummary and closes its connections when the run ends.
+ */
+public class PooledHttpClientFactory implements HttpClient.Factory {
+	private static final Logger log = LogManager.getLogger(PooledHttpClientFactory.class);
+	private static PooledHttpClientFactory instance = null;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient client;
+	private final ConcurrentHashMap<String, Latency> latencies = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a factory with its own connection pool.
+	 *
+	 * @param maxConnections int the maximum number of open connections, shared by all sessions
+	 * @param connectTimeout long the number of seconds to wait for a connection to open
+	 * @param readTimeout long the number of seconds to wait for a command to respond
+	 */
+	public PooledHttpClientFactory(int maxConnections, long connectTimeout, long readTimeout) {
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		// Every session talks to the same hub, so one route can use the whole pool.
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		connectionManager.setValidateAfterInactivity(2000);
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(connectTimeout))
+				.setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(connectTimeout))
+				.setSocketTimeout((int) TimeUnit.SECONDS.toMillis(readTimeout))
+				.build();
+		client = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.disableCookieManagement()
+				.build();
+	}
+
+	/**
+	 * Returns the shared factory, creating it from the remoteMaxConnections
+	 * (defaults to 20), remoteConnectTimeout (defaults to 120 seconds) and
+	 * remoteReadTimeout (defaults to 10800 seconds) properties.
+	 *
+	 * @return PooledHttpClientFactory the shared factory
+	 * @throws MissingConfigurationException if the requested configuration property has not been set
+	 * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+	 * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+	 * @throws IOException if other error occurs when mapping yml file into sentinel
+	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
+	 */
+	public static synchronized PooledHttpClientFactory getInstance() throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
+		if (instance == null) {
+			final PooledHttpClientFactory created = new PooledHttpClientFactory(getIntProperty("remoteMaxConnections", 20),
+					getIntProperty("remoteConnectTimeout", 120), getIntProperty("remoteReadTimeout", 10800));
+			RunSummary.addReport(new Callable<String>() {
+				@Override
+				public String call() {
+					return created.getLatencies().isEmpty() ? "" : created.getLatencyReport();
+				}
+			});
+			RunSummary.addCleanup(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (PooledHttpClientFactory.class) {
+						if (instance == created) {
+							instance = null;
+						}
+					}
+					created.close();
+				}
+			});
+			instance = created;
+		}
+		return instance;
+	}
+
+	private static int getIntProperty(String key, int defaultValue) throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
+		String value = ConfigurationManager.getProperty(key);
+		return value == null ? defaultValue : Integer.parseInt(value.trim());
+	}
+
+	@Override
+	public HttpClient createClient(URL url) {
+		return new PooledHttpClient(url);
+	}
+
+	@Override
+	public void cleanupIdleClients() {
+		connectionManager.closeExpiredConnections();
+		connectionManager.closeIdleConnections(30, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Closes every pooled connection. Clients created by this factory cannot be
+	 * used afterwards.
+	 */
+	public void close() {
+		try {
+			client.close();
+		} catch (java.io.IOException e) {
+			log.warn("Remote WebDriver connection pool did not close cleanly: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the latency recorded for each command, keyed by HTTP method and
+	 * path, e.g. POST /session/{id}/element.
+	 *
+	 * @return Map&lt;String, Latency&gt; the latency of each command, sorted by key
+	 */
+	public Map<String, Latency> getLatencies() {
+		return new TreeMap<String, Latency>(latencies);
+	}
+
+	/**
+	 * Returns a multi-line summary of command latencies, one command per line.
+	 *
+	 * @return String the latency summary
+	 */
+	public String getLatencyReport() {
+		StringBuilder report = new StringBuilder("Remote WebDriver command latency (count, mean ms, max ms):");
+		for (Map.Entry<String, Latency> entry : getLatencies().entrySet()) {
+			Latency latency = entry.getValue();
+			report.append(StringUtils.format("\n  {} {} {} {}", entry.getKey(), latency.getCount(),
+					String.format("%.1f", latency.getMeanMillis()), String.format("%.1f", latency.getMaxMillis())));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Replaces the session and element ids in a WebDriver command path with
+	 * placeholders so that the same command made in different sessions is
+	 * recorded under one key.
+	 */
+	static String commandKey(String method, String path) {
+		String[] segments = path.split("/");
+		for (int i = 1; i < segments.length; i++) {
+			String previous = segments[i - 1];
+			if (previous.equals("session") || previous.equals("element")) {
+				segments[i] = "{id}";
+			}
+		}
+		StringBuilder key = new StringBuilder(method).append(' ');
+		for (int i = 0; i < segments.length; i++) {
+			if (i > 0) {
+				key.append('/');
+			}
+			key.append(segments[i]);
+		}
+		return key.toString();
+	}
+
+	private void record(String key, long nanos) {
+		Latency latency = latencies.get(key);
+		if (latency == null) {
+			Latency created = new Latency();
+			latency = latencies.putIfAbsent(key, created);
+			if (latency == null) {
+				latency = created;
+			}
+		}
+		latency.add(nanos);
+	}
+
+	/**
+	 * The number, total and maximum duration of calls to one command.
+	 */
+	public static class Latency {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		void add(long nanos) {
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			long max;
+			do {
+				max = maxNanos.get();
+			} while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public double getTotalMillis() {
+			return totalNanos.get() / 1000000.0;
+		}
+
+		public double getMeanMillis() {
+			long calls = count.get();
+			return calls == 0 ? 0 : getTotalMillis() / calls;
+		}
+
+		public double getMaxMillis() {
+			return maxNanos.get() / 1000000.0;
+		}
+	}
+
+	/**
+	 * A Selenium HTTP client for one hub URL that sends its requests through
+	 * the factory's shared connection pool.
+	 */
+	private class PooledHttpClient implements HttpClient {
+		private final String baseUrl;
+		private final String targetHost;
+		private final String authorization;
+
+		PooledHttpClient(URL url) {
+			String base = url.toString();
+			String userInfo = url.getUserInfo();
+			if (userInfo != null) {
+				// Sauce Labs passes its credentials in the URL, which HttpClient will not send on its own.
+				authorization = "Basic " + Base64.getEncoder().encodeToString(userInfo.getBytes(StandardCharsets.UTF_8));
+				base = base.replace(userInfo + "@", "");
+			} else {
+				authorization = null;
+			}
+			baseUrl = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+			targetHost = url.getProtocol() + "://" + url.getHost() + (url.getPort() == -1 ? "" : ":" + url.getPort());
+		}
+
+		@Override
+		public HttpResponse execute(HttpRequest request) throws java.io.IOException {
+			HttpRequestBase method = toApacheRequest(request);
+			long start = System.nanoTime();
+			try (CloseableHttpResponse response = client.execute(method)) {
+				HttpResponse result = new HttpResponse();
+				result.setStatus(response.getStatusLine().getStatusCode());
+				for (Header header : response.getAllHeaders()) {
+					result.addHeader(header.getName(), header.getValue());
+				}
+				HttpEntity entity = response.getEntity();
+				// Reading the whole body returns the connection to the pool.
+				result.setContent(entity == null ? new byte[0] : EntityUtils.toByteArray(entity));
+				result.setTargetHost(targetHost);
+				return result;
+			} finally {
+				record(commandKey(request.getMethod().name(), request.getUri()), System.nanoTime() - start);
+			}
+		}
+
+		private HttpRequestBase toApacheRequest(HttpRequest request) throws java.io.IOException {
+			String uri = baseUrl + request.getUri();
+			HttpRequestBase method;
+			try {
+				URIBuilder builder = new URIBuilder(uri);
+				for (String name : request.getQueryParameterNames()) {
+					for (String value : request.getQueryParameters(name)) {
+						builder.addParameter(name, value);
+					}
+				}
+				switch (request.getMethod()) {
+				case GET:
+					method = new HttpGet(builder.build());
+					break;
+				case DELETE:
+					method = new HttpDelete(builder.build());
+					break;
+				case POST:
+					HttpPost post = new HttpPost(builder.build());
+					post.setEntity(new ByteArrayEntity(request.getContent()));
+					method = post;
+					break;
+				default:
+					throw new java.io.IOException("Unsupported HTTP method " + request.getMethod());
+				}
+			} catch (java.net.URISyntaxException e) {
+				throw new java.io.IOException("Invalid WebDriver command URI " + uri, e);
+			}
+			for (String name : request.getHeaderNames()) {
+				// HttpClient sets the length from the entity and refuses a second copy.
+				if (name.equalsIgnoreCase("Content-Length")) {
+					continue;
+				}
+				for (String value : request.getHeaders(name)) {
+					method.addHeader(name, value);
+				}
+			}
+			if (authorization != null) {
+				method.setHeader("Authorization", authorization);
+			}
+			return method;
+		}
+	}
+}
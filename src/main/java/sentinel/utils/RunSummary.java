@@ -0,0 +1,120 @@
+package sentinel.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects the summaries that parts of Sentinel keep about a whole test run,
+ * such as how much memory API scenario data still holds, and logs them once
+ * when the run ends. Resources that last for the whole run, such as the
+ * connection pool to a remote hub, are then released.
+ * <p>
+ * Each part adds its own report and cleanup the first time it is used, so
+ * nothing here needs to know about it. A test runner should call finish from
+ * its AfterClass method, after quitting its browsers. If it never does, the
+ * summary is printed to standard out when the JVM exits, since the logger may
+ * already have shut down by then.
+ */
+public class RunSummary {
+	private static final Logger log = LogManager.getLogger(RunSummary.class); // Create a logger.
+
+	// Guarded by the class.
+	private static final List<Callable<String>> reports = new ArrayList<>();
+	private static final List<Runnable> cleanups = new ArrayList<>();
+	private static boolean finished = false;
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				String summary = takeSummary();
+				if (summary != null && !summary.isEmpty()) {
+					System.out.println(summary);
+				}
+				cleanUp();
+			}
+		}, "sentinel-run-summary"));
+	}
+
+	private RunSummary() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * Adds a report to the end of run summary. A report that returns an empty
+	 * string or null is left out.
+	 *
+	 * @param report Callable&lt;String&gt; returns the report text when the run ends
+	 */
+	public static synchronized void addReport(Callable<String> report) {
+		reports.add(report);
+	}
+
+	/**
+	 * Adds a step to run when the run ends, after every report is built.
+	 *
+	 * @param cleanup Runnable releases a resource held for the whole run
+	 */
+	public static synchronized void addCleanup(Runnable cleanup) {
+		cleanups.add(cleanup);
+	}
+
+	/**
+	 * Logs every report, then runs every cleanup step. Reports are only logged
+	 * by the first call, so it is safe to call from more than one runner.
+	 */
+	public static void finish() {
+		String summary = takeSummary();
+		if (summary != null && !summary.isEmpty()) {
+			log.info(summary);
+		}
+		cleanUp();
+	}
+
+	/**
+	 * Runs and forgets every cleanup step, so a resource used again after
+	 * finish can add its cleanup again.
+	 */
+	private static void cleanUp() {
+		List<Runnable> steps;
+		synchronized (RunSummary.class) {
+			steps = new ArrayList<>(cleanups);
+			cleanups.clear();
+		}
+		for (Runnable cleanup : steps) {
+			try {
+				cleanup.run();
+			} catch (RuntimeException e) {
+				log.debug("A cleanup step failed at the end of the run: {}", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Builds the summary the first time it is called.
+	 *
+	 * @return String the summary, or null if it has already been taken
+	 */
+	private static synchronized String takeSummary() {
+		if (finished) {
+			return null;
+		}
+		finished = true;
+		StringBuilder summary = new StringBuilder();
+		for (Callable<String> report : reports) {
+			try {
+				String text = report.call();
+				if (text != null && !text.isEmpty()) {
+					summary.append(summary.length() == 0 ? "" : "\n").append(text);
+				}
+			} catch (Exception e) {
+				log.debug("A run report could not be built: {}", e.getMessage());
+			}
+		}
+		return summary.toString();
+	}
+}
@@ -0,0 +1,102 @@
+package sentinel.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Holds values that steps store for later steps in the same scenario, such as
+ * random text entered in a textbox that a later step looks for in a table.
+ * Each scenario gets its own map, keyed by its Cucumber scenario id, so values
+ * cannot leak from one scenario into the next and scenarios running in
+ * parallel do not share a lock.
+ * <p>
+ * BaseSteps starts a scenario before it runs and ends it afterwards, which
+ * discards its values. Values stored outside of a scenario, e.g. in a test
+ * setup method, go into a shared map that is never cleared and is visible to
+ * every scenario that has not stored a value with the same key.
+ * <p>
+ * Keys are not case sensitive and runs of whitespace are treated as a single
+ * underscore, so "Search Term" and "search_term" are the same key.
+ */
+public class ScenarioValueStore {
+	private static final Logger log = LogManager.getLogger(ScenarioValueStore.class);
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> scenarios = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, String> shared = new ConcurrentHashMap<>();
+	private static final ThreadLocal<ConcurrentHashMap<String, String>> current = new ThreadLocal<>();
+
+	private ScenarioValueStore() {
+		// Exists only to defeat instantiation.
+	}
+
+	/**
+	 * Starts a scenario on the current thread. Values stored on this thread
+	 * until endScenario is called belong to the scenario.
+	 *
+	 * @param scenarioId String the Cucumber scenario id
+	 */
+	public static void startScenario(String scenarioId) {
+		ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String, String> existing = scenarios.putIfAbsent(scenarioId, values);
+		current.set(existing == null ? values : existing);
+	}
+
+	/**
+	 * Ends the scenario running on the current thread and discards its values.
+	 *
+	 * @param scenarioId String the Cucumber scenario id
+	 */
+	public static void endScenario(String scenarioId) {
+		scenarios.remove(scenarioId);
+		current.remove();
+	}
+
+	/**
+	 * Stores a value for the current scenario.
+	 *
+	 * @param key String the key to set
+	 * @param value String the value to set
+	 */
+	public static void put(String key, String value) {
+		key = normalize(key);
+		values().put(key, value);
+		log.trace("Stored key/value pair: {}/{}", key, value);
+	}
+
+	/**
+	 * Returns a value stored by the current scenario, or stored outside of any
+	 * scenario.
+	 *
+	 * @param key String the item to get
+	 * @return String the value for the given key, or null if it has not been stored
+	 */
+	public static String get(String key) {
+		key = normalize(key);
+		ConcurrentHashMap<String, String> values = current.get();
+		String value = values == null ? null : values.get(key);
+		if (value == null) {
+			value = shared.get(key);
+		}
+		log.trace("Retrieved key/value pair: {}/{}", key, value);
+		return value;
+	}
+
+	/**
+	 * Makes a key lower case and replaces runs of whitespace with an underscore.
+	 *
+	 * @param key String the key as written in a step
+	 * @return String the key the value is stored under
+	 */
+	public static String normalize(String key) {
+		return WHITESPACE.matcher(key).replaceAll("_").toLowerCase();
+	}
+
+	private static ConcurrentHashMap<String, String> values() {
+		ConcurrentHashMap<String, String> values = current.get();
+		return values == null ? shared : values;
+	}
+}
@@ -0,0 +1,136 @@
+package sentinel.utils;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.SilentCssErrorHandler;
+import com.gargoylesoftware.htmlunit.WebClient;
+
+import sentinel.exceptions.ConfigurationMappingException;
+import sentinel.exceptions.ConfigurationParseException;
+import sentinel.exceptions.FileNotFoundException;
+import sentinel.exceptions.IOException;
+import sentinel.exceptions.MissingConfigurationException;
+import sentinel.exceptions.WebDriverException;
+
+/**
+ * An in-process driver that serves static HTML instead of making network
+ * requests, for measuring the framework's own overhead without a browser.
+ * Selected by setting the browser property to stub.
+ * <p>
+ * Every URL the driver is sent to returns the file named by the stubPage
+ * property, unless a page has been registered for that URL with addPage. The
+ * DOM and the scripts the framework injects run in HtmlUnit, so Table,
+ * ElementFunctions and the step definitions behave as they do in a browser.
+ * Setting the stubLatency property to a number of milliseconds adds that
+ * delay to every command, to model a real browser's round trip.
+ */
+public class StubWebDriver extends HtmlUnitDriver {
+	private static final String BLANK_PAGE = "<html><head><title>Stub</title></head><body></body></html>";
+
+	// Assigned from modifyWebClient, which runs inside the super constructor, so it must not have an initializer.
+	private MockWebConnection connection;
+
+	/**
+	 * Creates a driver that returns the given HTML for every URL.
+	 *
+	 * @param defaultHtml String the page to serve for URLs with no page of their own
+	 */
+	public StubWebDriver(String defaultHtml) {
+		super(BrowserVersion.CHROME, true);
+		connection.setDefaultResponse(defaultHtml);
+	}
+
+	@Override
+	protected WebClient modifyWebClient(WebClient client) {
+		connection = new MockWebConnection();
+		client.setWebConnection(connection);
+		client.setCssErrorHandler(new SilentCssErrorHandler());
+		client.getOptions().setThrowExceptionOnScriptError(false);
+		return client;
+	}
+
+	/**
+	 * Serves the given HTML when the driver is sent to the given URL.
+	 *
+	 * @param url String the absolute URL of the page
+	 * @param html String the page content
+	 * @throws java.net.MalformedURLException if the URL is not valid
+	 */
+	public void addPage(String url, String html) throws java.net.MalformedURLException {
+		connection.setResponse(new URL(url), html);
+	}
+
+	/**
+	 * Returns the number of pages the driver has served, which is useful for
+	 * checking that a benchmark is not reloading pages it does not need to.
+	 *
+	 * @return int the number of requests made
+	 */
+	public int getRequestCount() {
+		return connection.getRequestCount();
+	}
+
+	/**
+	 * Creates a stub driver from the stubPage and stubLatency properties.
+	 *
+	 * @return WebDriver the stub driver, wrapped to add latency if stubLatency is set
+	 * @throws WebDriverException if the stubPage file cannot be read
+	 * @throws MissingConfigurationException if the requested configuration property has not been set
+	 * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+	 * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+	 * @throws IOException if other error occurs when mapping yml file into sentinel
+	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
+	 */
+	public static WebDriver create() throws WebDriverException, ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
+		String page = ConfigurationManager.getProperty("stubPage");
+		String html = BLANK_PAGE;
+		if (page != null) {
+			try {
+				html = new String(Files.readAllBytes(new File(page).toPath()), StandardCharsets.UTF_8);
+			} catch (java.io.IOException e) {
+				throw new WebDriverException(StringUtils.format("The stub page {} could not be read: {}", page, e.getMessage()), e);
+			}
+		}
+		String latency = ConfigurationManager.getProperty("stubLatency");
+		WebDriver driver = new StubWebDriver(html);
+		return latency == null ? driver : withLatency(driver, Long.parseLong(latency.trim()));
+	}
+
+	/**
+	 * Wraps a driver so that every command, including commands on elements,
+	 * waits the given time before it runs.
+	 *
+	 * @param driver WebDriver the driver to slow down
+	 * @param millis long the delay added to each command in milliseconds
+	 * @return WebDriver the wrapped driver, or the driver itself if the delay is not positive
+	 */
+	public static WebDriver withLatency(WebDriver driver, final long millis) {
+		if (millis <= 0) {
+			return driver;
+		}
+		return DriverDecorator.wrap(driver, new DriverDecorator.Listener() {
+			@Override
+			public void before(String command, String locator) {
+				try {
+					TimeUnit.MILLISECONDS.sleep(millis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void after(String command, String locator, long nanos) {
+				// The delay is added before the command.
+			}
+		});
+	}
+}
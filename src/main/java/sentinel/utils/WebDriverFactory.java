@@ -1,17 +1,26 @@
 package sentinel.utils;
 
 import java.net.URL;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Set;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.SilentCssErrorHandler;
+import com.gargoylesoftware.htmlunit.WebClient;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
 import org.openqa.selenium.ie.InternetExplorerDriver;
 import org.openqa.selenium.ie.InternetExplorerOptions;
+import org.openqa.selenium.remote.CommandInfo;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.HttpCommandExecutor;
 import org.openqa.selenium.remote.RemoteWebDriver;
 import org.openqa.selenium.safari.SafariDriver;
 
@@ -49,6 +58,9 @@ import sentinel.exceptions.WebDriverException;
  * (<a href="https://www.seleniumhq.org/download/">Internet Explorer Driver
  * Server</a> 3.12.0)</li>
  * <li>Safari (Safaridriver 10) (Comes installed on OS X)
+ * <li>HtmlUnit (<a href="https://github.com/SeleniumHQ/htmlunit-driver">HtmlUnit
+ * Driver</a> 2.31.0) (Runs in-process, no browser or driver binary needed)</li>
+ * <li>Stub (Serves static HTML in-process, see StubWebDriver)</li>
  * </ul>
  * <p>
  * <b>Supported Operating Systems:</b>
@@ -56,11 +68,22 @@ import sentinel.exceptions.WebDriverException;
  * <li>Linux (Chrome/Firefox)</li>
  * <li>OS X (Chrome/Firefox/Safari)</li>
  * <li>Windows (Chrome/Firefox/Internet Explorer</li>
+ * <li>Any (HtmlUnit/Stub)</li>
  * </ul>
+ * <p>
+ * Drivers are kept in a pool and bound to the thread that leased them, so each
+ * thread running scenarios gets its own browser. The pool size is set with the
+ * driverPoolSize property and defaults to one session.
+ * <p>
+ * With the sessionRecycling property set to true, a session is reset and
+ * returned to the pool after each scenario instead of carrying its state
+ * into the next one. See recycleWebDriver.
  */
 public class WebDriverFactory {
     private static final Logger log = LogManager.getLogger(WebDriverFactory.class); // Create a logger.
-    private static WebDriver driver = null;
+    // The session bound to each thread running tests.
+    private static final ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+    private static WebDriverPool pool = null;
 
     private static WebDriverFactory instance = null;
 
@@ -71,7 +94,8 @@ public class WebDriverFactory {
     }
     
     /**
-     * Creates and Returns the usable WebDriver instance. 
+     * Returns the WebDriver instance bound to the current thread, leasing one
+     * from the pool if the thread does not have one yet.
      * 
      * @return WebDriver
      * @throws MissingConfigurationException if the requested configuration property has not been set
@@ -82,6 +106,30 @@ public class WebDriverFactory {
      * @throws FileNotFoundException if the sentinel configuration file does not exist.
      */
     public static WebDriver instantiateWebDriver() throws MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, IOException, WebDriverException, FileNotFoundException {
+        if (instance == null) {
+            instance = new WebDriverFactory();
+        }
+        WebDriver current = driver.get();
+        if (current == null) {
+            current = getPool().lease();
+            driver.set(current);
+        }
+        return current;
+    }
+
+    /**
+     * Creates a new WebDriver instance from the browser and os properties.
+     * Used by the pool when it needs another session.
+     * 
+     * @return WebDriver
+     * @throws MissingConfigurationException if the requested configuration property has not been set
+     * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+     * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+     * @throws IOException if other error occurs when mapping yml file into sentinel
+     * @throws WebDriverException if error thrown while creating WebDriver instance
+     * @throws FileNotFoundException if the sentinel configuration file does not exist.
+     */
+    static WebDriver createWebDriver() throws MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, IOException, WebDriverException, FileNotFoundException {
         String browser = ConfigurationManager.getProperty("browser");
         String operatingSystem = ConfigurationManager.getProperty("os");
         String saucelabsUserNameAndKey = ConfigurationManager.getProperty("saucelabs");
@@ -90,11 +138,13 @@ public class WebDriverFactory {
             if (browser == null) {
                 throw new MissingConfigurationException(StringUtils.format("Browser system property set as {}. Browser property must be set in sentinel.yml or via the command line. See project README for details.", browser));
             }
-            if (operatingSystem == null) {
+            // HtmlUnit and the stub run inside the JVM, so they do not care what operating system we are on.
+            String inProcessBrowser = browser.replaceAll("\\s+", "").toLowerCase();
+            if (operatingSystem == null && !inProcessBrowser.equals("htmlunit") && !inProcessBrowser.equals("stub")) {
                 throw new MissingConfigurationException(StringUtils.format("OS system property set as {}. OS property must be set in sentinel.yml or via the command line. See project README for details.", operatingSystem));
             }
         }
-			return instantiateWebDriver(browser, operatingSystem);
+        return createWebDriver(browser, operatingSystem);
     }
 
     /**
@@ -106,7 +156,7 @@ public class WebDriverFactory {
      * like "FireFox", "chrome" and "Internet Explorer" are all valid.
      * 
      * @param browser
-     *            String. Valid options: chrome, firefox, internet explorer, safari
+     *            String. Valid options: chrome, firefox, internet explorer, safari, htmlunit, stub
      * @param operatingSystem
      *            String. Valid options: linux, macintosh (mac, os x), windows (win)
      * @return An initialized <a href="https://www.seleniumhq.org/">Selenium
@@ -122,11 +172,31 @@ public class WebDriverFactory {
      */
     public static WebDriver instantiateWebDriver(String browser, String operatingSystem) throws WebDriverException, MalformedURLException, ConfigurationMappingException,
     ConfigurationParseException, IOException, MissingConfigurationException, FileNotFoundException {
-        // Ensure we only have one instance of this class, so that we always return the
-        // same driver.
         if (instance == null) {
             instance = new WebDriverFactory();
         }
+        WebDriver created = createWebDriver(browser, operatingSystem);
+        if (created != null) {
+            // The new session replaces whatever this thread was using and is quit with the rest of the pool.
+            releaseWebDriver();
+            getPool().adopt(created);
+            driver.set(created);
+        }
+        return created;
+    }
+
+    private static WebDriver createWebDriver(String browser, String operatingSystem) throws WebDriverException, MalformedURLException, ConfigurationMappingException,
+    ConfigurationParseException, IOException, MissingConfigurationException, FileNotFoundException {
+        WebDriver driver = null;
+        BrowserProfile profile = BrowserProfile.load();
+
+        // Set a Download Directory if one was specified on the command line
+        String downloadDirectory = ConfigurationManager.getProperty("download");
+        if (downloadDirectory != null)
+            DownloadManager.setDownloadDirectory(downloadDirectory);
+        // A profile's download directory wins, and DownloadManager must watch the same directory the browser uses.
+        downloadDirectory = profile.getDownloadDirectory(DownloadManager.getDownloadDirectory());
+        DownloadManager.setDownloadDirectory(downloadDirectory);
         //SSL Certificates
 //        ConfigurationManager.setSSLTrustLevel();
         
@@ -139,11 +209,13 @@ public class WebDriverFactory {
             // capabilities.setCapability("platform", "Windows 10");
             // capabilities.setCapability("version", "latest");
             // driver = new RemoteWebDriver(new URL(URL), capabilities);
-            ChromeOptions options = new ChromeOptions();
+            ChromeOptions options = profile.toChromeOptions(downloadDirectory);
             options.setCapability("platform", "Windows 10");
             options.setCapability("version", "70.0");
             try {
-				driver = new RemoteWebDriver(new URL(URL), options);
+                // Reuse keep-alive connections to the hub instead of opening one per command.
+                HttpCommandExecutor executor = new HttpCommandExecutor(Collections.<String, CommandInfo>emptyMap(), new URL(URL), PooledHttpClientFactory.getInstance());
+				driver = new RemoteWebDriver(executor, options);
 			} catch (java.net.MalformedURLException e) {
 				throw new MalformedURLException(e);
 			}
@@ -152,18 +224,13 @@ public class WebDriverFactory {
             // Declare a variable to store the filePath of the driver
             String driverPath;
 
-            // Set a Download Directory if one was specified on the command line
-            String downloadDirectory = ConfigurationManager.getProperty("download");
-            if (downloadDirectory != null)
-                DownloadManager.setDownloadDirectory(downloadDirectory);
-
             // Make sure whatever string we are passed is all lower case and all spaces are
             // removed.
             browser = browser.replaceAll("\\s+", "").toLowerCase();
             if (browser.equals("ie"))
                 browser = "internetexplorer";
 
-            operatingSystem = operatingSystem.replaceAll("\\s+", "").toLowerCase();
+            operatingSystem = operatingSystem == null ? "" : operatingSystem.replaceAll("\\s+", "").toLowerCase();
             if (operatingSystem.equals("macintosh") || operatingSystem.equals("osx"))
                 operatingSystem = "mac";
             else if (operatingSystem.equals("win"))
@@ -191,8 +258,7 @@ public class WebDriverFactory {
                         throw new WebDriverException(missingOSConfigurationErrorMessage);
                     }
                     System.setProperty("webdriver.chrome.driver", driverPath);
-                    setChromeDownloadDirectory("downloads");
-                    driver = new ChromeDriver();
+                    driver = new ChromeDriver(profile.toChromeOptions(downloadDirectory));
                     break;
                 case "firefox":
                     switch (operatingSystem) {
@@ -209,7 +275,7 @@ public class WebDriverFactory {
                         throw new WebDriverException(missingOSConfigurationErrorMessage);
                     }
                     System.setProperty("webdriver.gecko.driver", driverPath);
-                    driver = new FirefoxDriver();
+                    driver = new FirefoxDriver(profile.toFirefoxOptions(downloadDirectory));
                     break;
                 case "internetexplorer":
                     switch (operatingSystem) {
@@ -225,6 +291,7 @@ public class WebDriverFactory {
                     System.setProperty("webdriver.ie.driver", driverPath);
                 	InternetExplorerOptions options = new InternetExplorerOptions();
                 	options.ignoreZoomSettings();
+                	profile.applyTo(options);
 //                	options.requireWindowFocus();
                     driver = new InternetExplorerDriver(options);
                     break;
@@ -241,6 +308,22 @@ public class WebDriverFactory {
                     }
                     driver = new SafariDriver();
                     break;
+                case "htmlunit":
+                    // Runs in-process on any operating system with no driver binary.
+                    driver = new HtmlUnitDriver(BrowserVersion.CHROME, true) {
+                        @Override
+                        protected WebClient modifyWebClient(WebClient client) {
+                            // Behave like a real browser: report broken CSS and scripts in the log instead of failing the test.
+                            client.setCssErrorHandler(new SilentCssErrorHandler());
+                            client.getOptions().setThrowExceptionOnScriptError(false);
+                            return client;
+                        }
+                    };
+                    break;
+                case "stub":
+                    // Serves static HTML in-process, for measuring framework overhead.
+                    driver = StubWebDriver.create();
+                    break;
                 default:
                     throw new WebDriverException(StringUtils.format("Invalid browser type '{}' passed to WebDriverFactory. Could not resolve the reference. Check your spelling. Refer to the Javadoc for valid options.", browser));
                 }
@@ -249,6 +332,12 @@ public class WebDriverFactory {
             }
         }
 
+        if (driver != null) {
+            profile.applyTo(driver);
+            if (CommandTracer.isEnabled()) {
+                driver = CommandTracer.wrap(driver);
+            }
+        }
         return driver;
     }
 
@@ -260,7 +349,7 @@ public class WebDriverFactory {
     public static WebDriver getWebDriverAndHandleErrors() {
     	String errorMessage = "Retrieval WebDriver instance failed with a '{}', {}"; 
     	try {
-    		getWebDriver();
+    		return getWebDriver();
     	} catch (MissingConfigurationException e) {
     		log.error(StringUtils.format(errorMessage, "MissingConfigurationException", e.getMessage()));
     		return null;
@@ -280,10 +369,9 @@ public class WebDriverFactory {
     		log.error(StringUtils.format(errorMessage, "FileNotFoundException", e.getMessage()));
     		return null;
 		}
-    	return driver;
     }
     /**
-     * Returns the WebDriver instance
+     * Returns the WebDriver instance bound to the current thread
      * 
      * @return WebDriver
      * @throws WebDriverException if an error occurs when instantiating the WebDriver instance
@@ -294,17 +382,189 @@ public class WebDriverFactory {
      * @throws FileNotFoundException if the sentinel configuration file does not exist.
      */
     public static WebDriver getWebDriver() throws MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, IOException, WebDriverException, FileNotFoundException{
+        WebDriver current = driver.get();
+        if (current == null) {
+        	current = instantiateWebDriver();
+        }
+        return current;
+    }
+
+    /**
+     * Starts browser sessions in the background so that they are ready by the
+     * time the first scenario needs one. The number of sessions is read from
+     * the driverPoolPrewarm property and defaults to driverPoolSize. Returns
+     * immediately; threads that ask for a driver before a session is ready
+     * wait for it instead of starting another.
+     * 
+     * @return int the number of sessions being started
+     * @throws MissingConfigurationException if the requested configuration property has not been set
+     * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+     * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+     * @throws IOException if other error occurs when mapping yml file into sentinel
+     * @throws FileNotFoundException if the sentinel configuration file does not exist.
+     */
+    public static int prewarm() throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
+        String count = ConfigurationManager.getProperty("driverPoolPrewarm");
+        if (count == null) {
+            count = ConfigurationManager.getProperty("driverPoolSize");
+        }
+        return prewarm(count == null ? 1 : Integer.parseInt(count.trim()));
+    }
+
+    /**
+     * Starts up to the given number of browser sessions in the background.
+     * Sessions beyond the driverPoolSize are not started.
+     * 
+     * @param count int the number of sessions to start
+     * @return int the number of sessions being started
+     * @throws MissingConfigurationException if the requested configuration property has not been set
+     * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+     * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+     * @throws IOException if other error occurs when mapping yml file into sentinel
+     * @throws FileNotFoundException if the sentinel configuration file does not exist.
+     */
+    public static int prewarm(int count) throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
         if (instance == null) {
-        	instantiateWebDriver();
+            instance = new WebDriverFactory();
         }
-        return driver;
+        return getPool().prewarm(count);
+    }
+
+    /**
+     * Returns a summary of browser startup timings for the run so far,
+     * including how much startup time was hidden by pre-warming.
+     * 
+     * @return String the startup timing summary
+     */
+    public static String getStartupReport() {
+        return pool == null ? "No WebDriver sessions started." : pool.getStartupReport();
+    }
+
+    /**
+     * Unbinds the WebDriver instance from the current thread and returns it to
+     * the pool so that another thread can lease it. The next call to
+     * getWebDriver from this thread leases a session again, which may be a
+     * different one.
+     */
+    public static void releaseWebDriver() {
+        WebDriver current = driver.get();
+        driver.remove();
+        if (current != null && pool != null) {
+            pool.release(current);
+        }
+    }
+
+    /**
+     * Returns true if the sessionRecycling property is set to true, meaning
+     * sessions should be reset and returned to the pool after each scenario.
+     * 
+     * @return boolean true if session recycling is enabled
+     * @throws MissingConfigurationException if the requested configuration property has not been set
+     * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+     * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+     * @throws IOException if other error occurs when mapping yml file into sentinel
+     * @throws FileNotFoundException if the sentinel configuration file does not exist.
+     */
+    public static boolean isSessionRecyclingEnabled() throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
+        return Boolean.parseBoolean(ConfigurationManager.getProperty("sessionRecycling"));
+    }
+
+    /**
+     * Resets the WebDriver instance bound to the current thread and returns it
+     * to the pool. All windows other than the given one are closed, cookies,
+     * localStorage and sessionStorage are cleared, and the remaining window is
+     * pointed at about:blank. This takes milliseconds, where starting a new
+     * browser takes seconds.
+     * <p>
+     * The session is quit instead of reset if the scenario failed, if the reset
+     * itself fails, or if the session has been used sessionMaxUses times
+     * (defaults to 50). The pool starts a replacement on the next lease.
+     * <p>
+     * <b>NOTE:</b> WebDriver can only delete cookies for the domain of the
+     * current page, so cookies set by other domains visited in the scenario
+     * survive the reset. Use sessionMaxUses to bound how long they live.
+     * 
+     * @param keepHandle String the handle of the window to keep open, usually the parent window; if null the first window is kept
+     * @param failed boolean true if the scenario that used the session failed
+     * @return boolean true if the session was reset and returned to the pool, false if it was quit
+     * @throws MissingConfigurationException if the requested configuration property has not been set
+     * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+     * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+     * @throws IOException if other error occurs when mapping yml file into sentinel
+     * @throws FileNotFoundException if the sentinel configuration file does not exist.
+     */
+    public static boolean recycleWebDriver(String keepHandle, boolean failed) throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
+        WebDriver current = driver.get();
+        if (current == null || pool == null) {
+            return false;
+        }
+        driver.remove();
+        String maxUses = ConfigurationManager.getProperty("sessionMaxUses");
+        int limit = maxUses == null ? 50 : Integer.parseInt(maxUses.trim());
+        int used = pool.recordUse(current);
+        if (failed || (limit > 0 && used >= limit)) {
+            log.debug("Restarting WebDriver session after {} uses{}", used, failed ? " and a failed scenario" : "");
+            pool.discard(current);
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            resetSession(current, keepHandle);
+        } catch (org.openqa.selenium.WebDriverException e) {
+            log.warn("WebDriver session could not be reset and will be restarted: {}", e.getMessage());
+            pool.discard(current);
+            return false;
+        }
+        log.trace("WebDriver session reset in {} ms after {} uses", System.currentTimeMillis() - start, used);
+        pool.release(current);
+        return true;
     }
 
-    private static void setChromeDownloadDirectory(String filePath) {
-        HashMap<String, Object> chromePrefs = new HashMap<String, Object>();
-        chromePrefs.put("download.default_directory", filePath);
-        ChromeOptions options = new ChromeOptions();
-        options.setExperimentalOption("prefs", chromePrefs);
+    private static void resetSession(WebDriver session, String keepHandle) {
+        Set<String> handles = session.getWindowHandles();
+        if (keepHandle == null || !handles.contains(keepHandle)) {
+            keepHandle = handles.iterator().next();
+        }
+        for (String handle : handles) {
+            if (!handle.equals(keepHandle)) {
+                session.switchTo().window(handle).close();
+            }
+        }
+        session.switchTo().window(keepHandle);
+        session.switchTo().defaultContent();
+        // Storage belongs to the origin of the current page, so it has to be cleared before navigating away.
+        try {
+            ((JavascriptExecutor) session).executeScript("try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+        } catch (org.openqa.selenium.WebDriverException e) {
+            log.trace("Web storage could not be cleared: {}", e.getMessage());
+        }
+        session.manage().deleteAllCookies();
+        session.get("about:blank");
+    }
+
+    /**
+     * Quits every WebDriver instance in the pool, including those leased by
+     * other threads. Should be used at the end of a test run only.
+     */
+    public static void quit() {
+        driver.remove();
+        if (pool != null) {
+            pool.quitAll();
+        }
+        String trace = CommandTracer.getReport(20);
+        if (!trace.isEmpty()) {
+            log.info(trace);
+        }
+    }
+
+    private static synchronized WebDriverPool getPool() throws ConfigurationParseException, ConfigurationMappingException, IOException, MissingConfigurationException, FileNotFoundException {
+        if (pool == null) {
+            String size = ConfigurationManager.getProperty("driverPoolSize");
+            String timeout = ConfigurationManager.getProperty("driverPoolTimeout");
+            pool = new WebDriverPool(size == null ? 1 : Integer.parseInt(size.trim()),
+                    timeout == null ? 300 : Long.parseLong(timeout.trim()));
+        }
+        return pool;
     }
 
     /**
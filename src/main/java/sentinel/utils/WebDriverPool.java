@@ -0,0 +1,306 @@
+package sentinel.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+
+import sentinel.exceptions.ConfigurationMappingException;
+import sentinel.exceptions.ConfigurationParseException;
+import sentinel.exceptions.FileNotFoundException;
+import sentinel.exceptions.IOException;
+import sentinel.exceptions.MissingConfigurationException;
+import sentinel.exceptions.WebDriverException;
+
+/**
+ * A bounded pool of WebDriver sessions used by the WebDriverFactory. Sessions
+ * are created lazily on lease until the pool reaches its maximum size, after
+ * which callers wait for another thread to return one.
+ * <p>
+ * The pool does not know which thread holds which session. Binding a leased
+ * session to a thread is the job of the WebDriverFactory.
+ * <p>
+ * Sessions can be started ahead of time with prewarm, so that browser startup
+ * overlaps with configuration loading and feature parsing instead of
+ * delaying the first scenario. Startup and wait times are logged when the
+ * pool is shut down.
+ */
+final class WebDriverPool {
+	private static final Logger log = LogManager.getLogger(WebDriverPool.class);
+
+	private final int maxSize;
+	private final long leaseTimeout;
+	private final BlockingQueue<WebDriver> idle = new LinkedBlockingQueue<>();
+	private final Set<WebDriver> sessions = Collections.newSetFromMap(new ConcurrentHashMap<WebDriver, Boolean>());
+	// Counts sessions that exist or are being created, so that we never start more than maxSize browsers.
+	private final AtomicInteger size = new AtomicInteger();
+	// Sessions being started in the background that have not yet reached the idle queue.
+	private final AtomicInteger warming = new AtomicInteger();
+	// How many times each session has been handed back for reuse.
+	private final ConcurrentHashMap<WebDriver, AtomicInteger> uses = new ConcurrentHashMap<>();
+
+	// Startup timings, in milliseconds.
+	private final AtomicInteger sessionsStarted = new AtomicInteger();
+	private final AtomicLong startupMillis = new AtomicLong();
+	private final AtomicLong prewarmMillis = new AtomicLong();
+	private final AtomicLong waitMillis = new AtomicLong();
+
+	/**
+	 * Creates an empty pool.
+	 *
+	 * @param maxSize int the maximum number of sessions the pool will create
+	 * @param leaseTimeout long the number of seconds to wait for a session to be returned when the pool is full
+	 */
+	WebDriverPool(int maxSize, long leaseTimeout) {
+		this.maxSize = Math.max(1, maxSize);
+		this.leaseTimeout = leaseTimeout;
+	}
+
+	/**
+	 * Returns an idle session, creating a new one if the pool is not yet full.
+	 * If the pool is full, waits up to the lease timeout for another thread to
+	 * release a session.
+	 *
+	 * @return WebDriver a session that no other thread is using
+	 * @throws WebDriverException if the session cannot be created or no session is returned in time
+	 * @throws MissingConfigurationException if the requested configuration property has not been set
+	 * @throws ConfigurationParseException if error thrown while reading configuration file into sentinel
+	 * @throws ConfigurationMappingException if error thrown while mapping configuration file to sentinel
+	 * @throws IOException if other error occurs when mapping yml file into sentinel
+	 * @throws FileNotFoundException if the sentinel configuration file does not exist.
+	 */
+	WebDriver lease() throws WebDriverException, MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, IOException, FileNotFoundException {
+		WebDriver driver = idle.poll();
+		if (driver != null) {
+			return driver;
+		}
+		long started = System.currentTimeMillis();
+		long deadline = started + TimeUnit.SECONDS.toMillis(leaseTimeout);
+		try {
+			while (true) {
+				// Waiting on a session that is already starting is faster than starting another one.
+				if (warming.get() == 0 && reserve()) {
+					return create();
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new WebDriverException(StringUtils.format("No WebDriver session was released within {} seconds. Increase driverPoolSize or driverPoolTimeout, or make sure finished threads release their session.", leaseTimeout));
+				}
+				try {
+					driver = idle.poll(Math.min(remaining, 250), TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new WebDriverException("Interrupted while waiting for a WebDriver session.", e);
+				}
+				if (driver != null) {
+					return driver;
+				}
+			}
+		} finally {
+			waitMillis.addAndGet(System.currentTimeMillis() - started);
+		}
+	}
+
+	/**
+	 * Starts up to count sessions in the background and adds them to the idle
+	 * queue as they become ready. Returns immediately. Sessions beyond the
+	 * pool's maximum size are not started.
+	 *
+	 * @param count int the number of sessions to start
+	 * @return int the number of sessions actually started
+	 */
+	int prewarm(int count) {
+		int started = 0;
+		while (started < count && reserve()) {
+			started++;
+		}
+		if (started == 0) {
+			return 0;
+		}
+		warming.addAndGet(started);
+		log.debug("Pre-warming {} WebDriver sessions.", started);
+		ExecutorService executor = Executors.newFixedThreadPool(started, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "sentinel-prewarm-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (int i = 0; i < started; i++) {
+			CompletableFuture.supplyAsync(new Supplier<WebDriver>() {
+				@Override
+				public WebDriver get() {
+					long start = System.currentTimeMillis();
+					try {
+						WebDriver driver = create();
+						prewarmMillis.addAndGet(System.currentTimeMillis() - start);
+						return driver;
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				}
+			}, executor).whenComplete(new BiConsumer<WebDriver, Throwable>() {
+				@Override
+				public void accept(WebDriver driver, Throwable error) {
+					warming.decrementAndGet();
+					if (driver != null) {
+						idle.offer(driver);
+					} else {
+						Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+						log.error("Pre-warming a WebDriver session failed. It will be started on first use instead: {}", cause.getMessage());
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		return started;
+	}
+
+	/**
+	 * Creates a session in a slot that has already been reserved, releasing
+	 * the slot if creation fails.
+	 */
+	private WebDriver create() throws WebDriverException, MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, IOException, FileNotFoundException {
+		long start = System.currentTimeMillis();
+		WebDriver driver = null;
+		try {
+			driver = WebDriverFactory.createWebDriver();
+		} finally {
+			if (driver == null) {
+				size.decrementAndGet();
+			}
+		}
+		if (driver == null) {
+			throw new WebDriverException("The WebDriver session could not be created. Check the log for the underlying error.");
+		}
+		sessions.add(driver);
+		long elapsed = System.currentTimeMillis() - start;
+		startupMillis.addAndGet(elapsed);
+		sessionsStarted.incrementAndGet();
+		log.debug("Created WebDriver session {} of {} in {} ms", size.get(), maxSize, elapsed);
+		return driver;
+	}
+
+	/**
+	 * Tracks a session created outside of the pool so that it is quit with the
+	 * rest. Adopted sessions may take the pool over its maximum size.
+	 *
+	 * @param driver WebDriver the session to track
+	 */
+	void adopt(WebDriver driver) {
+		if (sessions.add(driver)) {
+			size.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns a session to the pool so that another thread can lease it.
+	 *
+	 * @param driver WebDriver the session to return
+	 */
+	void release(WebDriver driver) {
+		if (driver != null && sessions.contains(driver)) {
+			idle.offer(driver);
+		}
+	}
+
+	/**
+	 * Counts one more use of a session.
+	 *
+	 * @param driver WebDriver the session that was used
+	 * @return int the number of times the session has now been used
+	 */
+	int recordUse(WebDriver driver) {
+		AtomicInteger count = uses.get(driver);
+		if (count == null) {
+			AtomicInteger created = new AtomicInteger();
+			count = uses.putIfAbsent(driver, created);
+			if (count == null) {
+				count = created;
+			}
+		}
+		return count.incrementAndGet();
+	}
+
+	/**
+	 * Removes a session from the pool and quits it, freeing its slot.
+	 *
+	 * @param driver WebDriver the session to discard
+	 */
+	void discard(WebDriver driver) {
+		if (driver != null && sessions.remove(driver)) {
+			idle.remove(driver);
+			uses.remove(driver);
+			size.decrementAndGet();
+			quit(driver);
+		}
+	}
+
+	/**
+	 * Quits every session the pool has created, whether or not it is leased.
+	 */
+	void quitAll() {
+		log.info(getStartupReport());
+		List<WebDriver> all = new ArrayList<>(sessions);
+		sessions.clear();
+		idle.clear();
+		uses.clear();
+		size.set(0);
+		for (WebDriver driver : all) {
+			quit(driver);
+		}
+	}
+
+	/**
+	 * Returns a one line summary of how long sessions took to start, how long
+	 * threads waited for them and how much of the startup time was spent in
+	 * the background.
+	 *
+	 * @return String the startup timing summary
+	 */
+	String getStartupReport() {
+		long waited = waitMillis.get();
+		long prewarmed = prewarmMillis.get();
+		return StringUtils.format("WebDriver sessions started: {}, total startup: {} ms, started in background: {} ms, threads waited: {} ms, startup hidden: {} ms",
+				sessionsStarted.get(), startupMillis.get(), prewarmed, waited, Math.max(0, startupMillis.get() - waited));
+	}
+
+	private boolean reserve() {
+		int current;
+		do {
+			current = size.get();
+			if (current >= maxSize) {
+				return false;
+			}
+		} while (!size.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	private static void quit(WebDriver driver) {
+		try {
+			driver.quit();
+		} catch (org.openqa.selenium.WebDriverException e) {
+			log.warn("WebDriver session could not be quit cleanly: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package pages;
+
+import sentinel.elements.PageElement;
+import sentinel.elements.Textbox;
+import sentinel.pages.Page;
+
+public class ElementStatePage extends Page {
+	public Textbox disabled_textbox() { return new Textbox(ID, "disabled"); }
+	public PageElement hidden_message() { return new PageElement(ID, "hidden"); }
+	public PageElement missing_element() { return new PageElement(ID, "missing"); }
+}
@@ -0,0 +1,8 @@
+package pages;
+
+import sentinel.elements.Table;
+import sentinel.pages.Page;
+
+public class ResultsPage extends Page {
+	public Table results_table() { return new Table(ID, "results"); }
+}
@@ -0,0 +1,106 @@
+package sentinel.elements;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ColumnarTableModelTest {
+    private static final List<String> HEADERS = Arrays.asList("Id", "First Name", "Last Name", "Status");
+
+    private static ColumnarTableModel model(List<?>... rows) {
+        @SuppressWarnings("unchecked")
+        List<List<String>> cells = (List<List<String>>) (List<?>) Arrays.asList(rows);
+        return new ColumnarTableModel(HEADERS, cells);
+    }
+
+    @Test
+    public void repeatedValuesAreStoredOnce() {
+        ColumnarTableModel model = model(
+                Arrays.asList("1", "Ann", "Lee", "Active"),
+                Arrays.asList("2", "Bob", "Lee", "Active"),
+                Arrays.asList("3", "Ann", "Kim", "Active"));
+
+        assertEquals(3, model.getRowCount());
+        // 1, 2, 3, Ann, Bob, Lee, Kim, Active
+        assertEquals(8, model.getDistinctValueCount());
+        assertEquals("Kim", model.getCell(2, 2));
+    }
+
+    @Test
+    public void columnExistsFallsBackToHeadersContainingTheText() {
+        ColumnarTableModel model = model();
+
+        assertEquals(1, model.getColumnIndex("First Name"));
+        assertEquals(-1, model.getColumnIndex("Name"));
+        assertTrue(model.columnExists("First Name"));
+        assertTrue(model.columnExists("Name"));
+        assertFalse(model.columnExists("Email"));
+    }
+
+    @Test
+    public void firstRowNotContainingMatchesSubstrings() {
+        ColumnarTableModel model = model(
+                Arrays.asList("1", "Ann", "Lee", "Active"),
+                Arrays.asList("2", "Bob", "Lee", "Inactive"),
+                Arrays.asList("3", "Cy", "Kim", "Active"));
+        int status = model.getColumnIndex("Status");
+
+        assertEquals(-1, model.firstRowNotContaining(status, "ctive"));
+        assertEquals(1, model.firstRowNotContaining(status, "Active"));
+        assertEquals(0, model.firstRowNotContaining(status, "Inactive"));
+    }
+
+    @Test
+    public void aMissingCellDoesNotContainAnything() {
+        ColumnarTableModel model = model(
+                Arrays.asList("1", "Ann", "Lee", "Active"),
+                Arrays.asList("2", "Bob"));
+
+        assertNull(model.getCell(3, 1));
+        assertEquals(1, model.firstRowNotContaining(3, ""));
+    }
+
+    @Test
+    public void uniqueColumnComparesWholeValues() {
+        ColumnarTableModel model = model(
+                Arrays.asList("1", "Ann", "Lee", "Active"),
+                Arrays.asList("2", "Anna", "Lee", "Active"),
+                Arrays.asList("3", "An", "Kim", "Inactive"));
+
+        assertTrue(model.isUnique(model.getColumnIndex("Id")));
+        // Values that only contain one another are still different.
+        assertTrue(model.isUnique(model.getColumnIndex("First Name")));
+        assertFalse(model.isUnique(model.getColumnIndex("Last Name")));
+        assertEquals(1, model.firstDuplicateRow(new int[] { model.getColumnIndex("Status") }));
+    }
+
+    @Test
+    public void twoMissingCellsAreDuplicates() {
+        ColumnarTableModel model = model(
+                Arrays.asList("1", "Ann"),
+                Arrays.asList("2", "Bob"));
+
+        assertTrue(model.isUnique(0));
+        assertFalse(model.isUnique(3));
+    }
+
+    @Test
+    public void uniqueRowsUseAllKeyColumnsTogether() {
+        ColumnarTableModel model = model(
+                Arrays.asList("1", "Ann", "Lee", "Active"),
+                Arrays.asList("2", "Ann", "Kim", "Active"),
+                Arrays.asList("3", "Bob", "Lee", "Active"),
+                Arrays.asList("4", "Ann", "Kim", "Inactive"));
+        int[] names = { 1, 2 };
+        int[] namesAndStatus = { 1, 2, 3 };
+
+        assertEquals(3, model.firstDuplicateRow(names));
+        assertEquals(-1, model.firstDuplicateRow(namesAndStatus));
+    }
+}
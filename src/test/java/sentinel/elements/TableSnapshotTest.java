@@ -0,0 +1,142 @@
+package sentinel.elements;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TableSnapshotTest {
+    private static final List<String> HEADERS = Arrays.asList("Id", "Name");
+
+    private static TableSnapshot snapshot(List<?>... rows) {
+        @SuppressWarnings("unchecked")
+        List<List<String>> cells = (List<List<String>>) (List<?>) Arrays.asList(rows);
+        return TableSnapshot.of(HEADERS, cells);
+    }
+
+    @Test
+    public void equalRowsHaveEqualFingerprints() {
+        assertEquals(TableSnapshot.fingerprint(Arrays.asList("1", "Ann")), TableSnapshot.fingerprint(Arrays.asList("1", "Ann")));
+        assertNotEquals(TableSnapshot.fingerprint(Arrays.asList("1", "Ann")), TableSnapshot.fingerprint(Arrays.asList("1", "Anne")));
+    }
+
+    @Test
+    public void cellBoundariesChangeTheFingerprint() {
+        assertNotEquals(TableSnapshot.fingerprint(Arrays.asList("ab", "c")), TableSnapshot.fingerprint(Arrays.asList("a", "bc")));
+        assertNotEquals(TableSnapshot.fingerprint(Arrays.asList("a", "")), TableSnapshot.fingerprint(Arrays.asList("a")));
+    }
+
+    @Test
+    public void bothBytesOfACharacterAreHashed() {
+        // Ł and A share their low byte.
+        assertNotEquals(TableSnapshot.fingerprint(Arrays.asList("Ł")), TableSnapshot.fingerprint(Arrays.asList("A")));
+    }
+
+    @Test
+    public void aNullCellHashesLikeAnEmptyOne() {
+        assertEquals(TableSnapshot.fingerprint(Arrays.asList("a", null)), TableSnapshot.fingerprint(Arrays.asList("a", "")));
+    }
+
+    @Test
+    public void smallTablesKeepTheirText() {
+        TableSnapshot snapshot = snapshot(Arrays.asList("1", "Ann"), Arrays.asList("2", "Bob"));
+
+        assertEquals(HEADERS, snapshot.getHeaders());
+        assertEquals(2, snapshot.getRowCount());
+        assertTrue(snapshot.hasBody());
+        assertEquals("2 | Bob", snapshot.getRow(1));
+        assertEquals(TableSnapshot.fingerprint(Arrays.asList("2", "Bob")), snapshot.getFingerprint(1));
+    }
+
+    @Test
+    public void tablesOverTheBodyLimitOnlyKeepFingerprints() {
+        String cell = new String(new char[1024]).replace('\0', 'x');
+        List<List<String>> atLimit = new ArrayList<>();
+        for (int i = 0; i < TableSnapshot.MAX_BODY_CHARACTERS / cell.length(); i++) {
+            atLimit.add(Collections.singletonList(cell));
+        }
+        assertTrue(TableSnapshot.of(HEADERS, atLimit).hasBody());
+
+        List<List<String>> overLimit = new ArrayList<>(atLimit);
+        overLimit.add(Collections.singletonList("y"));
+        TableSnapshot snapshot = TableSnapshot.of(HEADERS, overLimit);
+
+        assertFalse(snapshot.hasBody());
+        assertNull(snapshot.getRow(0));
+        assertEquals(overLimit.size(), snapshot.getRowCount());
+        assertEquals(TableSnapshot.fingerprint(Collections.singletonList("y")), snapshot.getFingerprint(overLimit.size() - 1));
+    }
+
+    @Test
+    public void movedRowsAreNotDifferences() {
+        TableDiff diff = snapshot(Arrays.asList("1", "Ann"), Arrays.asList("2", "Bob"), Arrays.asList("3", "Cy"))
+                .diff(snapshot(Arrays.asList("2", "Bob"), Arrays.asList("1", "Ann"), Arrays.asList("3", "Cy")));
+
+        assertTrue(diff.isEmpty());
+        assertEquals("Tables match.", diff.toString());
+    }
+
+    @Test
+    public void aDifferentRowInTheSamePlaceIsChanged() {
+        TableDiff diff = snapshot(Arrays.asList("1", "Ann"), Arrays.asList("2", "Bob"), Arrays.asList("3", "Cy"))
+                .diff(snapshot(Arrays.asList("1", "Ann"), Arrays.asList("2", "Rob"), Arrays.asList("3", "Cy")));
+
+        assertEquals(Arrays.asList(1), diff.getChangedRows());
+        assertTrue(diff.getAddedRows().isEmpty());
+        assertTrue(diff.getRemovedRows().isEmpty());
+        assertTrue(diff.toString(), diff.toString().contains("row 2 changed: [2 | Bob] -> [2 | Rob]"));
+    }
+
+    @Test
+    public void rowsOnlyInOneSnapshotAreAddedOrRemoved() {
+        TableSnapshot stored = snapshot(Arrays.asList("1", "Ann"), Arrays.asList("2", "Bob"), Arrays.asList("3", "Cy"));
+
+        TableDiff removed = stored.diff(snapshot(Arrays.asList("1", "Ann"), Arrays.asList("3", "Cy")));
+        assertEquals(Arrays.asList(1), removed.getRemovedRows());
+        assertTrue(removed.getAddedRows().isEmpty());
+        assertTrue(removed.getChangedRows().isEmpty());
+        assertTrue(removed.toString(), removed.toString().contains("row 2 removed: [2 | Bob]"));
+
+        TableDiff added = stored.diff(snapshot(Arrays.asList("1", "Ann"), Arrays.asList("2", "Bob"), Arrays.asList("3", "Cy"), Arrays.asList("4", "Di")));
+        assertEquals(Arrays.asList(3), added.getAddedRows());
+        assertTrue(added.getRemovedRows().isEmpty());
+        assertTrue(added.toString(), added.toString().contains("row 4 added: [4 | Di]"));
+    }
+
+    @Test
+    public void duplicateRowsAreMatchedOneForOne() {
+        TableDiff diff = snapshot(Arrays.asList("1", "Ann"), Arrays.asList("1", "Ann"))
+                .diff(snapshot(Arrays.asList("1", "Ann")));
+
+        assertEquals(Arrays.asList(1), diff.getRemovedRows());
+    }
+
+    @Test
+    public void changedHeadersAreADifference() {
+        TableSnapshot stored = snapshot(Arrays.asList("1", "Ann"));
+        TableSnapshot current = TableSnapshot.of(Arrays.asList("Id", "Full Name"), Collections.singletonList(Arrays.asList("1", "Ann")));
+        TableDiff diff = stored.diff(current);
+
+        assertTrue(diff.headersChanged());
+        assertFalse(diff.isEmpty());
+    }
+
+    @Test
+    public void differencesWithoutTextOnlyGiveRowNumbers() {
+        String cell = new String(new char[TableSnapshot.MAX_BODY_CHARACTERS + 1]).replace('\0', 'x');
+        TableSnapshot stored = TableSnapshot.of(HEADERS, Arrays.asList(Arrays.asList("1", cell)));
+        TableSnapshot current = TableSnapshot.of(HEADERS, Arrays.asList(Arrays.asList("2", cell)));
+        TableDiff diff = stored.diff(current);
+
+        assertEquals(Arrays.asList(0), diff.getChangedRows());
+        assertEquals("Tables differ:\n  row 1 changed", diff.toString());
+    }
+}
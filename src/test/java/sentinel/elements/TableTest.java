@@ -0,0 +1,155 @@
+package sentinel.elements;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+
+import sentinel.exceptions.NoSuchColumnException;
+import sentinel.pages.PageManager;
+import sentinel.utils.ConfigurationManager;
+import sentinel.utils.ElementFunctions;
+import sentinel.utils.SelectorType;
+import sentinel.utils.TestConfiguration;
+import sentinel.utils.WebDriverFactory;
+
+/**
+ * Checks the Table verification methods against a table read from a page in
+ * the in-process HtmlUnit browser.
+ */
+public class TableTest {
+    private static final String PEOPLE = "<html><body><table id='people'>"
+            + "<tr><th>Id</th><th>First Name</th><th>Last Name</th><th>Status</th></tr>"
+            + "<tr><td>1</td><td>Ann</td><td>Lee</td><td>Active</td></tr>"
+            + "<tr><td>2</td><td>Anna</td><td>Lee</td><td>Inactive</td></tr>"
+            + "<tr><td>3</td><td>Ann</td><td>Kim</td><td>Active</td></tr>"
+            + "</table></body></html>";
+
+    private static final String RESULTS = "<html><body><table id='results'>"
+            + "<tr><th>Id</th><th>Name</th></tr>"
+            + "<tr><td>1</td><td>{}</td></tr>"
+            + "</table></body></html>";
+
+    private static WebDriver driver;
+    private static File directory;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        directory = TestConfiguration.use("configurations:\n  dev:\n    browser: htmlunit\n    pageObjectPackages: pages\n");
+        driver = WebDriverFactory.getWebDriver();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        try {
+            WebDriverFactory.quit();
+        } finally {
+            TestConfiguration.restore();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Table.clearStoredTables();
+        load(PEOPLE);
+    }
+
+    private static void load(String page) throws Exception {
+        File html = File.createTempFile("table", ".html", directory);
+        Files.write(html.toPath(), page.getBytes(StandardCharsets.UTF_8));
+        driver.get(html.toURI().toString());
+    }
+
+    private static Table people() {
+        return new Table(SelectorType.ID, "people");
+    }
+
+    @Test
+    public void columnCellsContainMatchesPartOfEachCell() throws Exception {
+        assertTrue(people().verifyColumnCellsContain("Status", "ctive"));
+        assertFalse(people().verifyColumnCellsContain("Status", "Active"));
+        assertTrue(people().verifyColumnCellsContain("First Name", "Ann"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnCellsContainNeedsTheExactHeader() throws Exception {
+        people().verifyColumnCellsContain("Name", "Ann");
+    }
+
+    @Test
+    public void columnExistsFallsBackToPartOfAHeader() throws Exception {
+        assertTrue(people().verifyColumnExists("Last Name"));
+        assertTrue(people().verifyColumnExists("Name"));
+        assertFalse(people().verifyColumnExists("Email"));
+    }
+
+    @Test
+    public void columnCellsAreUniqueComparesWholeCells() throws Exception {
+        assertTrue(people().verifyColumnCellsAreUnique("Id"));
+        assertFalse(people().verifyColumnCellsAreUnique("First Name"));
+        assertFalse(people().verifyColumnCellsAreUnique("Last Name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnCellsAreUniqueNeedsTheExactHeader() throws Exception {
+        people().verifyColumnCellsAreUnique("Name");
+    }
+
+    @Test
+    public void rowCellsAreUniqueUsesTheColumnsTogether() throws Exception {
+        assertTrue(people().verifyRowCellsAreUnique("First Name, Last Name"));
+        assertFalse(people().verifyRowCellsAreUnique("First Name, Status"));
+        assertTrue(people().verifyRowCellsAreUnique(new String[] { "Id", "Status" }));
+    }
+
+    @Test(expected = NoSuchColumnException.class)
+    public void rowCellsAreUniqueFailsForAMissingColumn() throws Exception {
+        people().verifyRowCellsAreUnique("First Name, Email");
+    }
+
+    @Test
+    public void storedPagesAreKeptPerPageObject() throws Exception {
+        PageManager.setPage("ResultsPage");
+        load(RESULTS.replace("{}", "Ann"));
+        ElementFunctions.getElementAsTable("results table").storeTable(1);
+        PageManager.setPage("ArchivePage");
+        load(RESULTS.replace("{}", "Bob"));
+        ElementFunctions.getElementAsTable("results table").storeTable(1);
+
+        PageManager.setPage("ResultsPage");
+        load(RESULTS.replace("{}", "Ann"));
+        assertTrue(ElementFunctions.getElementAsTable("results table").compareWithStoredTable(1));
+        PageManager.setPage("ArchivePage");
+        load(RESULTS.replace("{}", "Bob"));
+        assertTrue(ElementFunctions.getElementAsTable("results table").compareWithStoredTable(1));
+        load(RESULTS.replace("{}", "Ann"));
+        assertFalse(ElementFunctions.getElementAsTable("results table").compareWithStoredTable(1));
+    }
+
+    @Test
+    public void aTableReadElementByElementCanBeReadAgainAfterAReset() throws Exception {
+        String previous = System.getProperty("tableExtraction");
+        System.setProperty("tableExtraction", "element");
+        ConfigurationManager.reloadConfiguration();
+        try {
+            Table table = people();
+            table.storeTable(1);
+            assertTrue(table.compareWithStoredTable(1));
+        } finally {
+            if (previous == null) {
+                System.clearProperty("tableExtraction");
+            } else {
+                System.setProperty("tableExtraction", previous);
+            }
+            ConfigurationManager.reloadConfiguration();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package sentinel.steps;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+
+import sentinel.exceptions.NoSuchElementException;
+import sentinel.pages.PageManager;
+import sentinel.utils.CompiledConfiguration;
+import sentinel.utils.ConfigurationCompiler;
+import sentinel.utils.ConfigurationManager;
+import sentinel.utils.K;
+import sentinel.utils.WebDriverFactory;
+
+/**
+ * Checks that the hidden and not enabled steps fail for an element that is
+ * not on the page, both when the wait runs inside the browser and when it
+ * falls back to polling. Runs in the in-process HtmlUnit browser.
+ */
+public class VerificationStepsTest {
+    private static final String PAGE = "<html><body>"
+            + "<input id='disabled' disabled>"
+            + "<div id='hidden' style='display:none'>Hidden</div>"
+            + "</body></html>";
+
+    private static final String CONFIGURATION_YAML = "configurations:\n"
+            + "  dev:\n"
+            + "    os: Linux\n"
+            + "    browser: htmlunit\n"
+            + "    pageObjectPackages: pages\n";
+
+    private static WebDriver driver;
+    private static String previousEnv;
+    private static ClassLoader previousClassLoader;
+    private static File configurationDirectory;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        // Read the configuration from a compiled snapshot of a YAML file in a temporary directory,
+        // so the test neither needs nor touches the project's conf/sentinel.yml.
+        configurationDirectory = Files.createTempDirectory("sentinel-test").toFile();
+        File yaml = new File(configurationDirectory, "conf/sentinel.yml");
+        yaml.getParentFile().mkdirs();
+        Files.write(yaml.toPath(), CONFIGURATION_YAML.getBytes(StandardCharsets.UTF_8));
+        ConfigurationCompiler.compile(configurationDirectory, new File(configurationDirectory, CompiledConfiguration.RESOURCE));
+        previousClassLoader = Thread.currentThread().getContextClassLoader();
+        final URL snapshot = new File(configurationDirectory, CompiledConfiguration.RESOURCE).toURI().toURL();
+        Thread.currentThread().setContextClassLoader(new ClassLoader(previousClassLoader) {
+            @Override
+            public URL getResource(String name) {
+                return CompiledConfiguration.RESOURCE.equals(name) ? snapshot : super.getResource(name);
+            }
+        });
+        previousEnv = System.getProperty(K.ENV);
+        System.setProperty(K.ENV, K.DEV);
+        ConfigurationManager.reloadConfiguration();
+
+        driver = WebDriverFactory.getWebDriver();
+        File html = File.createTempFile("element-state", ".html", configurationDirectory);
+        Files.write(html.toPath(), PAGE.getBytes(StandardCharsets.UTF_8));
+        driver.get(html.toURI().toString());
+        PageManager.setPage("ElementStatePage");
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        try {
+            WebDriverFactory.quit();
+        } finally {
+            if (previousEnv == null) {
+                System.clearProperty(K.ENV);
+            } else {
+                System.setProperty(K.ENV, previousEnv);
+            }
+            Thread.currentThread().setContextClassLoader(previousClassLoader);
+            ConfigurationManager.reloadConfiguration();
+            delete(configurationDirectory);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void hiddenAndDisabledElementsPass() throws Throwable {
+        useInPageWait(true);
+        VerificationSteps.i_verify_an_element_is_hidden("hidden message", null);
+        VerificationSteps.i_verify_an_element_is_enabled("disabled textbox", " not");
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void missingElementFailsIsHidden() throws Throwable {
+        useInPageWait(true);
+        VerificationSteps.i_verify_an_element_is_hidden("missing element", null);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void missingElementFailsIsNotEnabled() throws Throwable {
+        useInPageWait(true);
+        VerificationSteps.i_verify_an_element_is_enabled("missing element", " not");
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void missingElementFailsIsHiddenWithoutInPageWait() throws Throwable {
+        useInPageWait(false);
+        VerificationSteps.i_verify_an_element_is_hidden("missing element", null);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void missingElementFailsIsNotEnabledWithoutInPageWait() throws Throwable {
+        useInPageWait(false);
+        VerificationSteps.i_verify_an_element_is_enabled("missing element", " not");
+    }
+
+    /**
+     * HtmlUnit's script timeout defaults to 0, which makes the in-page wait fall
+     * back to polling. A browser following the W3C protocol defaults to 30 seconds.
+     */
+    private static void useInPageWait(boolean inPage) {
+        driver.manage().timeouts().setScriptTimeout(inPage ? 30 : 0, TimeUnit.SECONDS);
+    }
+}
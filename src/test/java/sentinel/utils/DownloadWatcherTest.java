@@ -0,0 +1,141 @@
+package sentinel.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import sentinel.utils.DownloadWatcher.DownloadedFile;
+
+/**
+ * Simulates browsers downloading into a temporary directory and checks when
+ * the watcher reports each file as finished.
+ */
+public class DownloadWatcherTest {
+    /** Long enough that a file finished by a rename is clearly reported before it could be by stability. */
+    private static final long STABLE_MILLIS = 2000;
+    private static final int CHUNK = 64 * 1024;
+
+    private Path directory;
+    private final byte[] data = new byte[5 * CHUNK];
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        TestConfiguration.use("configurations:\n  dev:\n    downloadStableMillis: " + STABLE_MILLIS + "\n");
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        TestConfiguration.restore();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("downloads");
+        new Random(42).nextBytes(data);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void renamingThePartialFileFinishesTheDownload() throws Exception {
+        CompletableFuture<DownloadedFile> download = DownloadWatcher.getInstance().expect(directory.toString(), "pdf");
+        Path partial = directory.resolve("x.pdf.crdownload");
+        Files.write(partial, Arrays.copyOfRange(data, 0, CHUNK));
+        for (int chunk = 1; chunk < 5; chunk++) {
+            Thread.sleep(100);
+            Files.write(partial, Arrays.copyOfRange(data, chunk * CHUNK, (chunk + 1) * CHUNK), StandardOpenOption.APPEND);
+        }
+        Thread.sleep(100);
+        assertFalse("reported while still a partial file", download.isDone());
+
+        long renamed = System.currentTimeMillis();
+        Files.move(partial, directory.resolve("x.pdf"));
+        DownloadedFile file = download.get(10, TimeUnit.SECONDS);
+
+        assertTrue("took " + (System.currentTimeMillis() - renamed) + " ms", System.currentTimeMillis() - renamed < STABLE_MILLIS);
+        assertEquals("x.pdf", file.getName());
+        assertEquals(data.length, file.getSize());
+        assertEquals(sha256(data), file.getSha256());
+    }
+
+    @Test
+    public void aFileStillGrowingIsNotFinishedByAnotherRename() throws Exception {
+        CompletableFuture<DownloadedFile> first = DownloadWatcher.getInstance().expect(directory.toString(), "zip");
+        CompletableFuture<DownloadedFile> second = DownloadWatcher.getInstance().expect(directory.toString(), "zip");
+
+        // One download writes straight to its final name, the other renames its partial file while the first is still going.
+        try (OutputStream growing = Files.newOutputStream(directory.resolve("big.zip"))) {
+            growing.write(data, 0, CHUNK);
+            growing.flush();
+            Thread.sleep(300);
+            Path partial = directory.resolve("small.zip.crdownload");
+            Files.write(partial, "small".getBytes("UTF-8"));
+            Thread.sleep(100);
+            Files.move(partial, directory.resolve("small.zip"));
+            for (int chunk = 1; chunk < 5; chunk++) {
+                Thread.sleep(300);
+                growing.write(data, chunk * CHUNK, CHUNK);
+                growing.flush();
+            }
+            DownloadedFile small = first.get(1, TimeUnit.SECONDS);
+            assertEquals("small.zip", small.getName());
+            assertEquals(5, small.getSize());
+            assertFalse("big.zip reported while still growing", second.isDone());
+        }
+
+        DownloadedFile big = second.get(10, TimeUnit.SECONDS);
+        assertEquals("big.zip", big.getName());
+        assertEquals(data.length, big.getSize());
+        assertEquals(sha256(data), big.getSha256());
+    }
+
+    @Test
+    public void aPartialFileWithoutTheFinalNameWaitsForTheFileToStopGrowing() throws Exception {
+        CompletableFuture<DownloadedFile> download = DownloadWatcher.getInstance().expect(directory.toString(), "csv");
+        Path partial = directory.resolve(".com.google.Chrome.a1B2c3");
+        Files.write(partial, data);
+        long renamed = System.currentTimeMillis();
+        Files.move(partial, directory.resolve("report.csv"));
+
+        Thread.sleep(STABLE_MILLIS / 2);
+        assertFalse("reported before the file was stable", download.isDone());
+        DownloadedFile file = download.get(10, TimeUnit.SECONDS);
+        assertTrue(System.currentTimeMillis() - renamed >= STABLE_MILLIS);
+        assertEquals("report.csv", file.getName());
+        assertEquals(sha256(data), file.getSha256());
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package sentinel.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Gives a test class its own sentinel.yml without touching the project's conf
+ * directory. The YAML is written to a temporary directory, compiled into a
+ * configuration snapshot there, and served through the context class loader
+ * until restore is called, which also puts back the env property.
+ */
+public class TestConfiguration {
+    private static String previousEnv;
+    private static ClassLoader previousClassLoader;
+    private static File directory;
+
+    private TestConfiguration() {
+        // Exists only to defeat instantiation.
+    }
+
+    /**
+     * Uses the given sentinel.yml contents in the dev environment.
+     *
+     * @param yaml String the contents of sentinel.yml
+     * @return File the temporary directory, which is deleted by restore
+     * @throws IOException if the file or snapshot cannot be written
+     */
+    public static synchronized File use(String yaml) throws IOException {
+        directory = Files.createTempDirectory("sentinel-test").toFile();
+        File file = new File(directory, "conf/sentinel.yml");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), yaml.getBytes(StandardCharsets.UTF_8));
+        final URL snapshot = new File(directory, CompiledConfiguration.RESOURCE).toURI().toURL();
+        ConfigurationCompiler.compile(directory, new File(directory, CompiledConfiguration.RESOURCE));
+        previousClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new ClassLoader(previousClassLoader) {
+            @Override
+            public URL getResource(String name) {
+                return CompiledConfiguration.RESOURCE.equals(name) ? snapshot : super.getResource(name);
+            }
+        });
+        previousEnv = System.getProperty(K.ENV);
+        System.setProperty(K.ENV, K.DEV);
+        ConfigurationManager.reloadConfiguration();
+        return directory;
+    }
+
+    /**
+     * Puts back the env property and class loader and deletes the temporary directory.
+     */
+    public static synchronized void restore() {
+        if (previousEnv == null) {
+            System.clearProperty(K.ENV);
+        } else {
+            System.setProperty(K.ENV, previousEnv);
+        }
+        Thread.currentThread().setContextClassLoader(previousClassLoader);
+        ConfigurationManager.reloadConfiguration();
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -21,6 +21,7 @@ import sentinel.exceptions.SentinelException;
 import sentinel.exceptions.WebDriverException;
 import sentinel.pages.PageManager;
 import sentinel.utils.K;
+import sentinel.utils.RunSummary;
 import sentinel.utils.WebDriverFactory;
 
 @RunWith(Cucumber.class)
@@ -42,13 +43,14 @@ public class TestRun {
         System.setProperty("os", "Windows");
         System.setProperty("browser", "ie");
 //        System.setProperty("saucelabs", "username:saucelabs_key");
-        WebDriverFactory.instantiateWebDriver(); 
+        WebDriverFactory.prewarm(); // Start browsers in the background while Cucumber parses the features.
     }
 
     @AfterClass
     public static void tearDownAfterClass() throws MissingConfigurationException, ConfigurationParseException, ConfigurationMappingException, WebDriverException, IOException, sentinel.exceptions.IOException, FileNotFoundException {
         log.debug("Driver: {}", WebDriverFactory.getWebDriver());
         PageManager.quit();
+        RunSummary.finish();
         Reporter.loadXMLConfig(new File("conf/extent-config.xml"));
         Reporter.setSystemInfo("user", System.getProperty("user.name"));
         Reporter.setSystemInfo("os", System.getProperty("os"));